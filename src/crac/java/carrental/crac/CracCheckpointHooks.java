@@ -0,0 +1,35 @@
+package carrental.crac;
+
+import carrental.CheckpointHooks;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registers the hooks with the global CRaC context. On a JDK without CRaC the {@code org.crac}
+ * library turns this into a no-op, so the same jar runs everywhere.
+ */
+public final class CracCheckpointHooks implements CheckpointHooks {
+    // The CRaC context holds resources weakly.
+    private static final List<Resource> registered = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void register(Runnable beforeCheckpoint, Runnable afterRestore) {
+        Resource r = new Resource() {
+            @Override
+            public void beforeCheckpoint(Context<? extends Resource> context) {
+                beforeCheckpoint.run();
+            }
+
+            @Override
+            public void afterRestore(Context<? extends Resource> context) {
+                afterRestore.run();
+            }
+        };
+        registered.add(r);
+        Core.getGlobalContext().register(r);
+    }
+}
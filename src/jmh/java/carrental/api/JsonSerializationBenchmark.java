@@ -0,0 +1,87 @@
+package carrental.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import carrental.bench.Fixtures;
+import carrental.domain.model.Car;
+import carrental.domain.model.ReservationView;
+import io.javalin.json.JavalinJackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code cars}/{@code reservations} are the old path (Javalin's default mapper to a
+ * {@code String}, then UTF-8 bytes); the {@code Tuned} variants use the hand-written
+ * serializers through a pre-resolved writer straight to bytes. Setup checks that both
+ * produce identical output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private JavalinJackson json;
+    private ObjectWriter carListWriter;
+    private ObjectWriter reservationListWriter;
+    private List<Car> cars;
+    private List<ReservationView> reservations;
+
+    @Setup
+    public void setup() {
+        json = new JavalinJackson();
+        cars = Fixtures.cars(size);
+        reservations = Fixtures.reservations(size);
+
+        JavalinJackson tuned = new JavalinJackson().updateMapper(m -> m.registerModule(ResponseJson.module()));
+        carListWriter = tuned.getMapper().writerFor(new TypeReference<List<Car>>() {});
+        reservationListWriter = tuned.getMapper().writerFor(new TypeReference<List<ReservationView>>() {});
+
+        try {
+            if (!Arrays.equals(cars(), carsTuned()) || !Arrays.equals(reservations(), reservationsTuned())) {
+                throw new IllegalStateException("hand-written serializers differ from the default output");
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public byte[] cars() {
+        return json.toJsonString(cars, List.class).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] reservations() {
+        return json.toJsonString(reservations, List.class).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] carsTuned() throws JsonProcessingException {
+        return carListWriter.writeValueAsBytes(cars);
+    }
+
+    @Benchmark
+    public byte[] reservationsTuned() throws JsonProcessingException {
+        return reservationListWriter.writeValueAsBytes(reservations);
+    }
+}
@@ -0,0 +1,60 @@
+package carrental.api;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+    private static final String SECRET = "bench-secret";
+
+    private static final int TOKENS = 4096;
+
+    /** 1 keeps nearly every call on the full verification path, 10000 serves all tokens from the cache. */
+    @Param({"1", "10000"})
+    public int cacheSize;
+
+    private JwtService jwt;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        jwt = new JwtService(SECRET, cacheSize);
+        Instant now = Instant.now();
+        Algorithm alg = Algorithm.HMAC256(SECRET);
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = JWT.create()
+                    .withSubject(String.valueOf(i + 1))
+                    .withClaim("login", "user" + i)
+                    .withIssuedAt(now)
+                    .withExpiresAt(now.plusSeconds(24 * 3600))
+                    .sign(alg);
+        }
+    }
+
+    @Benchmark
+    public long verifyAndGetClientId() {
+        next = (next + 1) & (TOKENS - 1);
+        return jwt.verifyAndGetClientId(tokens[next]);
+    }
+}
@@ -0,0 +1,40 @@
+package carrental.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one limiter check: {@code manyKeys} spreads calls over a large key space (the usual
+ * case), {@code oneKey} makes every thread contend on the same stripe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private final RateLimiter limiter = new RateLimiter(1_000_000_000, 1_000_000, 65_536);
+
+    @Benchmark
+    public long manyKeys() {
+        return limiter.tryAcquire(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    public long oneKey() {
+        return limiter.tryAcquire(42);
+    }
+}
@@ -0,0 +1,78 @@
+package carrental.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files and exits with status 1 if any benchmark present
+ * in both got slower (or lost throughput) by more than the given relative threshold.
+ */
+public final class CompareResults {
+    private CompareResults() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: CompareResults <baseline.json> <current.json> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> e : current.entrySet()) {
+            JsonNode before = baseline.get(e.getKey());
+            if (before == null) continue;
+
+            double was = before.path("primaryMetric").path("score").asDouble();
+            double now = e.getValue().path("primaryMetric").path("score").asDouble();
+            if (was == 0) continue;
+
+            boolean higherIsBetter = isThroughput(e.getValue().path("mode").asText());
+            double change = higherIsBetter ? (was - now) / was : (now - was) / was;
+            String unit = e.getValue().path("primaryMetric").path("scoreUnit").asText();
+
+            String verdict = change > threshold ? "REGRESSION" : "ok";
+            if (change > threshold) regressions++;
+            System.out.printf("%-10s %-90s %12.3f -> %12.3f %s (%+.1f%%)%n",
+                    verdict, e.getKey(), was, now, unit, change * 100);
+        }
+
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed by more than " + (threshold * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    private static boolean isThroughput(String mode) {
+        return "thrpt".equals(mode);
+    }
+
+    private static Map<String, JsonNode> load(File f) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(f);
+        Map<String, JsonNode> out = new LinkedHashMap<>();
+        for (JsonNode run : root) {
+            out.put(key(run), run);
+        }
+        return out;
+    }
+
+    private static String key(JsonNode run) {
+        StringBuilder sb = new StringBuilder(run.path("benchmark").asText());
+        JsonNode params = run.path("params");
+        Iterator<Map.Entry<String, JsonNode>> it = params.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> p = it.next();
+            sb.append(' ').append(p.getKey()).append('=').append(p.getValue().asText());
+        }
+        sb.append(" [").append(run.path("mode").asText()).append(']');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package carrental.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the bench database with about a million reservations, runs {@code EXPLAIN} for
+ * the hot queries under both custom and generic plans, and exits with status 1 if any of
+ * them reads {@code reservations} with a sequential scan.
+ *
+ * <p>Usage: {@code ExplainCheck [cars] [clients] [perClient]}, defaults 1000 / 20000 / 50.
+ */
+public final class ExplainCheck {
+    private static final long CLIENT_ID = 20;
+    private static final long CAR_ID = 20;
+
+    private ExplainCheck() {}
+
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private record HotQuery(String name, String sql, Binder binder) {}
+
+    public static void main(String[] args) throws Exception {
+        int cars = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int perClient = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        LocalDate today = LocalDate.now();
+        List<HotQuery> queries = List.of(
+                new HotQuery("isClientAllowed", """
+                        SELECT COUNT(*) FROM reservations
+                        WHERE client_id = ? AND status IN ('pending','confirmed') AND date_to >= CURRENT_DATE
+                        """, ps -> ps.setLong(1, CLIENT_ID)),
+                new HotQuery("listByClient", """
+                        SELECT * FROM vw_client_reservations
+                        WHERE client_id = ?
+                        ORDER BY date_from DESC, rental_id DESC
+                        """, ps -> ps.setLong(1, CLIENT_ID)),
+                new HotQuery("listByClientAfter", """
+                        SELECT * FROM vw_client_reservations
+                        WHERE client_id = ? AND (date_from, rental_id) < (?, ?)
+                        ORDER BY date_from DESC, rental_id DESC
+                        LIMIT ?
+                        """, ps -> {
+                    ps.setLong(1, CLIENT_ID);
+                    ps.setDate(2, Date.valueOf("1950-01-01"));
+                    ps.setLong(3, Long.MAX_VALUE);
+                    ps.setInt(4, 51);
+                }),
+                new HotQuery("getByIdForClient", """
+                        SELECT * FROM vw_client_reservations WHERE rental_id = ? AND client_id = ?
+                        """, ps -> {
+                    ps.setLong(1, 1000);
+                    ps.setLong(2, CLIENT_ID);
+                }),
+                new HotQuery("listAvailable", """
+                        SELECT c.car_id FROM cars c
+                        WHERE NOT EXISTS (
+                            SELECT 1 FROM reservations r
+                            WHERE r.car_id = c.car_id
+                              AND r.status <> 'canceled'
+                              AND daterange(r.date_from, r.date_to, '[)') && daterange(?, ?, '[)')
+                        )
+                        ORDER BY car_id
+                        """, ps -> {
+                    ps.setDate(1, Date.valueOf(today.plusDays(10)));
+                    ps.setDate(2, Date.valueOf(today.plusDays(13)));
+                }),
+                new HotQuery("carBusy", """
+                        SELECT 1 FROM reservations
+                        WHERE car_id = ? AND status <> 'canceled'
+                          AND daterange(date_from, date_to, '[)') && daterange(?, ?, '[)')
+                        """, ps -> {
+                    ps.setLong(1, CAR_ID);
+                    ps.setDate(2, Date.valueOf(today.plusDays(10)));
+                    ps.setDate(3, Date.valueOf(today.plusDays(13)));
+                }),
+                new HotQuery("listCarRanges", """
+                        SELECT rental_id, car_id, date_from, date_to FROM reservations
+                        WHERE car_id = ? AND status <> 'canceled'
+                          AND daterange(date_from, date_to, '[)') && daterange(?, ?, '[)')
+                        """, ps -> {
+                    ps.setLong(1, CAR_ID);
+                    ps.setDate(2, Date.valueOf(today.minusDays(90)));
+                    ps.setDate(3, Date.valueOf(today));
+                }),
+                new HotQuery("listActiveRanges", """
+                        SELECT rental_id, car_id, date_from, date_to FROM reservations
+                        WHERE status <> 'canceled' AND date_to > ?
+                        """, ps -> ps.setDate(1, Date.valueOf(today)))
+        );
+
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> failures = new ArrayList<>();
+
+        try (HikariDataSource ds = Fixtures.seededDataSource(cars, clients, perClient);
+             Connection c = ds.getConnection()) {
+            seedActive(c, cars, clients);
+
+            for (String mode : List.of("force_custom_plan", "force_generic_plan")) {
+                try (Statement st = c.createStatement()) {
+                    st.execute("SET plan_cache_mode = " + mode);
+                }
+                for (HotQuery q : queries) {
+                    JsonNode plan;
+                    try (PreparedStatement ps = c.prepareStatement("EXPLAIN (FORMAT JSON) " + q.sql())) {
+                        q.binder().bind(ps);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            plan = mapper.readTree(rs.getString(1)).get(0).get("Plan");
+                        }
+                    }
+                    List<String> scans = new ArrayList<>();
+                    collectSeqScans(plan, scans);
+                    String verdict = scans.contains("reservations") ? "SEQ SCAN" : "ok";
+                    if (!"ok".equals(verdict)) failures.add(q.name() + " (" + mode + ")");
+                    System.out.printf("%-8s %-18s %-18s %s%n", verdict, q.name(), mode, describe(plan));
+                }
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            System.err.println("sequential scan on reservations: " + String.join(", ", failures));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Gives every tenth client one current booking so the active-status indexes are not empty.
+     */
+    private static void seedActive(Connection c, int cars, int clients) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("""
+                    INSERT INTO reservations (client_id, car_id, date_from, date_to, status,
+                                              daily_rate_at_booking, total_amount)
+                    SELECT g, 1 + (g %% %1$d),
+                           CURRENT_DATE + ((g / %1$d) * 4)::int,
+                           CURRENT_DATE + ((g / %1$d) * 4)::int + 3,
+                           'confirmed', 80, 240
+                    FROM generate_series(10, %2$d, 10) g
+                    """.formatted(cars, clients));
+            st.execute("ANALYZE reservations");
+        }
+    }
+
+    private static void collectSeqScans(JsonNode node, List<String> out) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            out.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, out);
+        }
+    }
+
+    private static String describe(JsonNode node) {
+        StringBuilder sb = new StringBuilder(node.path("Node Type").asText());
+        if (node.has("Index Name")) sb.append('[').append(node.path("Index Name").asText()).append(']');
+        else if (node.has("Relation Name")) sb.append('[').append(node.path("Relation Name").asText()).append(']');
+        JsonNode children = node.path("Plans");
+        if (children.size() > 0) {
+            sb.append(" (");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(describe(children.get(i)));
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
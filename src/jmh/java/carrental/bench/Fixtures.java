@@ -0,0 +1,96 @@
+package carrental.bench;
+
+import carrental.domain.model.Car;
+import carrental.domain.model.ReservationView;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Fixtures {
+    public static final String JDBC_URL = System.getProperty("bench.jdbcUrl", "jdbc:postgresql://localhost:5432/car_house_bench");
+    public static final String DB_USER = System.getProperty("bench.dbUser", "postgres");
+    public static final String DB_PASSWORD = System.getProperty("bench.dbPassword", "postgres");
+
+    private Fixtures() {}
+
+    public static List<Car> cars(int n) {
+        List<Car> out = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            out.add(new Car(i, "A-BC-" + (1000 + i), "Toyota", "Camry", "available",
+                    new BigDecimal("80.00"), new BigDecimal("10.00"), 2020));
+        }
+        return out;
+    }
+
+    public static List<ReservationView> reservations(int n) {
+        List<ReservationView> out = new ArrayList<>(n);
+        LocalDate base = LocalDate.of(2026, 3, 1);
+        for (int i = 1; i <= n; i++) {
+            out.add(new ReservationView(i, 123, "Иван Иванов", i % 50 + 1, "A-BC-" + (1000 + i), "Toyota", "Camry",
+                    base.plusDays(i), base.plusDays(i + 4), "confirmed",
+                    new BigDecimal("80.00"), new BigDecimal("320.00"), new BigDecimal("0.00"), new BigDecimal("200.00")));
+        }
+        return out;
+    }
+
+    public static HikariDataSource dataSource() {
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl(JDBC_URL);
+        hc.setUsername(DB_USER);
+        hc.setPassword(DB_PASSWORD);
+        return new HikariDataSource(hc);
+    }
+
+    /**
+     * Recreates the schema from the application's migrations and seeds {@code cars} cars,
+     * {@code clients} clients and {@code perClient} past reservations for every client.
+     */
+    public static HikariDataSource seededDataSource(int cars, int clients, int perClient) throws SQLException {
+        HikariDataSource ds = dataSource();
+        Flyway.configure()
+                .dataSource(ds)
+                .locations("classpath:db/migration")
+                .cleanDisabled(false)
+                .load()
+                .clean();
+        Flyway.configure()
+                .dataSource(ds)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    INSERT INTO cars (plate_number, brand, model, status, daily_cost, insurance_cost, prod_year)
+                    SELECT 'B-' || g, 'Toyota', 'Camry', 'available', 80, 10, 2020
+                    FROM generate_series(1, %d) g
+                    """.formatted(cars));
+            st.execute("""
+                    INSERT INTO clients (full_name, passport_data, login, password_hash, email)
+                    SELECT 'Client ' || g, 'P-' || g, 'bench' || g, 'x', 'bench' || g || '@mail.com'
+                    FROM generate_series(1, %d) g
+                    """.formatted(clients));
+            st.execute("""
+                    INSERT INTO reservations (client_id, car_id, date_from, date_to, status,
+                                              daily_rate_at_booking, total_amount)
+                    SELECT cl.client_id,
+                           1 + (n %% %2$d),
+                           DATE '1900-01-01' + ((n / %2$d) * 4)::int,
+                           DATE '1900-01-01' + ((n / %2$d) * 4)::int + 3,
+                           'completed', 80, 240
+                    FROM clients cl, generate_series(0, %1$d - 1) k,
+                         LATERAL (SELECT (cl.client_id - 1) * %1$d + k AS n) s
+                    """.formatted(perClient, cars));
+            st.execute("ANALYZE");
+        }
+        return ds;
+    }
+}
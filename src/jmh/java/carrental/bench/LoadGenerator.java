@@ -0,0 +1,159 @@
+package carrental.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load generator: {@code clients} virtual threads each send a request,
+ * wait for the answer and send the next one. Prints throughput and latency percentiles
+ * and optionally writes them as JSON.
+ *
+ * <pre>
+ * LoadGenerator url=http://localhost:8080/api/v1/cars/1 clients=1000 seconds=30 warmup=5 \
+ *               header=Authorization:Bearer_x out=target/load.json
+ * </pre>
+ */
+public final class LoadGenerator {
+    private LoadGenerator() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq > 0) opts.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        List<URI> urls = new ArrayList<>();
+        for (String u : opts.getOrDefault("url", "http://localhost:8080/api/v1/cars").split(",")) {
+            urls.add(URI.create(u));
+        }
+        int clients = Integer.parseInt(opts.getOrDefault("clients", "1000"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "5"));
+        String header = opts.get("header");
+
+        Result r = run(urls, clients, warmup, seconds, header);
+        System.out.println(r.summary());
+        String out = opts.get("out");
+        if (out != null) r.write(new File(out));
+    }
+
+    public static Result run(List<URI> urls, int clients, int warmupSeconds, int seconds, String header)
+            throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long stopAt = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+        LongAdder errors = new LongAdder();
+        List<long[]> samples = new ArrayList<>();
+        int[] counts = new int[clients];
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                long[] mine = new long[1 << 12];
+                samples.add(mine);
+                int worker = i;
+                workers.submit(() -> {
+                    long[] buf = mine;
+                    int n = 0;
+                    int k = worker;
+                    while (true) {
+                        long t0 = System.nanoTime();
+                        if (t0 >= stopAt) break;
+                        HttpRequest.Builder b = HttpRequest.newBuilder(urls.get(k++ % urls.size()))
+                                .timeout(Duration.ofSeconds(30)).GET();
+                        if (header != null) {
+                            int c = header.indexOf(':');
+                            b.header(header.substring(0, c), header.substring(c + 1).replace('_', ' '));
+                        }
+                        boolean ok;
+                        try {
+                            HttpResponse<Void> resp = http.send(b.build(), HttpResponse.BodyHandlers.discarding());
+                            ok = resp.statusCode() < 500;
+                        } catch (IOException | InterruptedException e) {
+                            ok = false;
+                        }
+                        long t1 = System.nanoTime();
+                        if (t0 < measureFrom) continue;
+                        if (!ok) {
+                            errors.increment();
+                            continue;
+                        }
+                        if (n == buf.length) {
+                            buf = Arrays.copyOf(buf, n * 2);
+                            synchronized (samples) {
+                                samples.set(worker, buf);
+                            }
+                        }
+                        buf[n++] = t1 - t0;
+                        counts[worker] = n;
+                    }
+                });
+            }
+        }
+
+        int total = 0;
+        for (int c : counts) total += c;
+        long[] all = new long[total];
+        int pos = 0;
+        for (int i = 0; i < clients; i++) {
+            System.arraycopy(samples.get(i), 0, all, pos, counts[i]);
+            pos += counts[i];
+        }
+        Arrays.sort(all);
+        return new Result(clients, seconds, total, errors.sum(), all);
+    }
+
+    public record Result(int clients, int seconds, int requests, long errors, long[] sortedNanos) {
+        public double throughput() {
+            return (double) requests / seconds;
+        }
+
+        public double percentileMillis(double p) {
+            if (sortedNanos.length == 0) return 0;
+            int idx = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, idx)] / 1_000_000.0;
+        }
+
+        public String summary() {
+            return String.format("clients=%d requests=%d errors=%d rps=%.0f p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+                    clients, requests, errors, throughput(),
+                    percentileMillis(0.50), percentileMillis(0.99), percentileMillis(0.999), percentileMillis(1.0));
+        }
+
+        public void write(File f) throws IOException {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("clients", clients);
+            m.put("seconds", seconds);
+            m.put("requests", requests);
+            m.put("errors", errors);
+            m.put("rps", throughput());
+            m.put("p50_ms", percentileMillis(0.50));
+            m.put("p99_ms", percentileMillis(0.99));
+            m.put("p999_ms", percentileMillis(0.999));
+            m.put("max_ms", percentileMillis(1.0));
+            if (f.getParentFile() != null) f.getParentFile().mkdirs();
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(f, m);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package carrental.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start benchmark: launches the application jar {@code runs} times with the same JVM that
+ * runs this class, and for each launch measures the time until {@code /ready} answers 200 and
+ * until the first request to {@code path} has been answered, plus that request's own latency.
+ * The database has to be up; the child inherits the environment, so the usual variables
+ * ({@code JDBC_URL}, {@code FLYWAY_MODE}, ...) apply, except {@code HTTP_ADDR}, which is set
+ * to {@code port}.
+ *
+ * <pre>
+ * StartupBenchmark jar=target/app.jar runs=5 jvm=-XX:SharedArchiveFile=target/app.jsa \
+ *                  port=8080 path=/api/v1/cars out=target/startup.json
+ * </pre>
+ * {@code jvm} takes several options separated by commas.
+ */
+public final class StartupBenchmark {
+    private static final long POLL_MS = 5;
+    private static final long TIMEOUT_MS = 60_000;
+
+    private StartupBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq > 0) opts.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        String jar = opts.getOrDefault("jar", "target/app.jar");
+        int runs = Integer.parseInt(opts.getOrDefault("runs", "5"));
+        int port = Integer.parseInt(opts.getOrDefault("port", "8080"));
+        String path = opts.getOrDefault("path", "/api/v1/cars");
+        List<String> jvm = new ArrayList<>();
+        String jvmOpts = opts.getOrDefault("jvm", "");
+        if (!jvmOpts.isBlank()) jvm.addAll(Arrays.asList(jvmOpts.split(",")));
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(ProcessHandle.current().info().command().orElse("java"));
+        cmd.addAll(jvm);
+        cmd.add("-jar");
+        cmd.add(jar);
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        URI ready = URI.create("http://127.0.0.1:" + port + "/ready");
+        URI first = URI.create("http://127.0.0.1:" + port + path);
+        File log = new File("target/startup-run.log");
+
+        double[] readyMs = new double[runs];
+        double[] firstResponseMs = new double[runs];
+        double[] firstLatencyMs = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long t0 = System.nanoTime();
+            ProcessBuilder pb = new ProcessBuilder(cmd).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.to(log));
+            pb.environment().put("HTTP_ADDR", ":" + port);
+            Process p = pb.start();
+            try {
+                waitForReady(http, ready, p, t0);
+                long t1 = System.nanoTime();
+                HttpResponse<Void> r = http.send(HttpRequest.newBuilder(first).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                long t2 = System.nanoTime();
+                if (r.statusCode() != 200) throw new IllegalStateException(path + " answered " + r.statusCode());
+                readyMs[i] = (t1 - t0) / 1e6;
+                firstResponseMs[i] = (t2 - t0) / 1e6;
+                firstLatencyMs[i] = (t2 - t1) / 1e6;
+                System.out.printf("run %d: ready=%.0fms first_response=%.0fms first_latency=%.2fms%n",
+                        i + 1, readyMs[i], firstResponseMs[i], firstLatencyMs[i]);
+            } finally {
+                p.destroyForcibly();
+                p.waitFor(10, TimeUnit.SECONDS);
+            }
+        }
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jvm", jvm);
+        m.put("runs", runs);
+        m.put("ready_ms_median", median(readyMs));
+        m.put("first_response_ms_median", median(firstResponseMs));
+        m.put("first_response_ms_max", Arrays.stream(firstResponseMs).max().orElse(0));
+        m.put("first_latency_ms_median", median(firstLatencyMs));
+        System.out.printf("median: ready=%.0fms first_response=%.0fms first_latency=%.2fms%n",
+                median(readyMs), median(firstResponseMs), median(firstLatencyMs));
+
+        String out = opts.get("out");
+        if (out != null) {
+            File f = new File(out);
+            if (f.getParentFile() != null) f.getParentFile().mkdirs();
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(f, m);
+        }
+    }
+
+    private static void waitForReady(HttpClient http, URI ready, Process p, long t0)
+            throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(ready).GET().build();
+        while (true) {
+            if (!p.isAlive()) throw new IllegalStateException("application exited with " + p.exitValue());
+            if (System.nanoTime() - t0 > TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS)) {
+                throw new IllegalStateException("not ready after " + TIMEOUT_MS + " ms");
+            }
+            try {
+                if (http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (IOException notListeningYet) {
+                // connection refused until the server starts
+            }
+            Thread.sleep(POLL_MS);
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] s = values.clone();
+        Arrays.sort(s);
+        return s.length == 0 ? 0 : s[s.length / 2];
+    }
+}
@@ -0,0 +1,102 @@
+package carrental.repository.jdbc;
+
+import carrental.bench.Fixtures;
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookingRequest;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bookings per second through {@code create_confirmed_reservations} for growing batch sizes;
+ * the {@code items} counter is the number to compare. Every thread books its own block of cars
+ * on dates before the seeded history, moving two days back per call, so nothing conflicts and
+ * the client never becomes blocked.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class BatchBookingDbBenchmark {
+    private static final int CARS_PER_THREAD = 100;
+
+    @State(Scope.Benchmark)
+    public static class Db {
+        HikariDataSource ds;
+        JdbcReservationRepository reservations;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws SQLException {
+            ds = Fixtures.seededDataSource(CARS_PER_THREAD * 4, 4, 1);
+            reservations = new JdbcReservationRepository(ds);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            ds.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        @Param({"1", "10", "50"})
+        int batchSize;
+
+        long clientId;
+        long firstCar;
+        LocalDate day = LocalDate.of(1899, 12, 1);
+
+        @Setup(Level.Trial)
+        public void setup(Db db) {
+            int n = db.threads.incrementAndGet();
+            clientId = n;
+            firstCar = (long) (n - 1) * CARS_PER_THREAD + 1;
+        }
+
+        List<BookingRequest> next() {
+            day = day.minusDays(2);
+            List<BookingRequest> items = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                items.add(new BookingRequest(firstCar + i, day, day.plusDays(1)));
+            }
+            return items;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Items {
+        public long items;
+    }
+
+    @Benchmark
+    public List<BatchItemResult> batch(Db db, Caller c, Items counter) {
+        List<BatchItemResult> out = db.reservations.createConfirmedBatch(c.clientId, c.next(), true);
+        if (out.get(0).reservation() == null) throw new IllegalStateException(out.get(0).message());
+        counter.items += out.size();
+        return out;
+    }
+}
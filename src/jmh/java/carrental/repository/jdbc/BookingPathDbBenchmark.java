@@ -0,0 +1,109 @@
+package carrental.repository.jdbc;
+
+import carrental.bench.Fixtures;
+import carrental.domain.model.ReservationView;
+import carrental.service.ReservationEventLog;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Booking latency distribution (see the p0.99 percentile in the sample-time output) of the
+ * former four-call sequence versus the single {@code create_confirmed_reservation} call.
+ * Every booking is canceled right away so the client stays eligible and the car stays free.
+ * {@code singleCallWithEvents} adds the two {@link ReservationEventLog} emits the service
+ * makes, with the writer draining into {@code reservation_events} on the same pool.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class BookingPathDbBenchmark {
+    private static final int CARS = 200;
+    private static final int CLIENTS = 100;
+
+    @State(Scope.Benchmark)
+    public static class Db {
+        HikariDataSource ds;
+        JdbcReservationRepository reservations;
+        ReservationEventLog events;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws SQLException, IOException {
+            ds = Fixtures.seededDataSource(CARS, CLIENTS, 1);
+            reservations = new JdbcReservationRepository(ds);
+            events = new ReservationEventLog(new JdbcReservationEventRepository(ds), 65_536, 500,
+                    Files.createTempFile("reservation-events", ".spill"));
+            events.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            events.close();
+            ds.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        long clientId;
+        long carId;
+        final LocalDate from = LocalDate.now().plusYears(1);
+        final LocalDate to = from.plusDays(3);
+
+        @Setup(Level.Trial)
+        public void setup(Db db) {
+            int n = db.threads.incrementAndGet();
+            clientId = n;
+            carId = n;
+        }
+    }
+
+    @Benchmark
+    public ReservationView fourCalls(Db db, Caller c) {
+        JdbcReservationRepository res = db.reservations;
+        if (!res.isClientAllowed(c.clientId)) throw new IllegalStateException("client blocked");
+        long id = res.create(c.clientId, c.carId, c.from, c.to);
+        res.updateStatus(id, c.clientId, "confirmed");
+        ReservationView v = res.getByIdForClient(id, c.clientId);
+        res.updateStatus(id, c.clientId, "canceled");
+        return v;
+    }
+
+    @Benchmark
+    public ReservationView singleCall(Db db, Caller c) {
+        ReservationView v = db.reservations.createConfirmed(c.clientId, c.carId, c.from, c.to);
+        db.reservations.updateStatus(v.rentalId(), c.clientId, "canceled");
+        return v;
+    }
+
+    @Benchmark
+    public ReservationView singleCallWithEvents(Db db, Caller c) {
+        ReservationView v = db.reservations.createConfirmed(c.clientId, c.carId, c.from, c.to);
+        db.events.emit(v.rentalId(), c.clientId, v.carId(), "confirmed");
+        db.reservations.updateStatus(v.rentalId(), c.clientId, "canceled");
+        db.events.emit(v.rentalId(), c.clientId, null, "canceled");
+        return v;
+    }
+}
@@ -0,0 +1,115 @@
+package carrental.repository.jdbc;
+
+import carrental.bench.Fixtures;
+import carrental.domain.model.BookedRange;
+import carrental.domain.model.Car;
+import carrental.domain.model.ClientWithHash;
+import carrental.domain.model.ReservationView;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of every {@code Jdbc*Repository} against a local Postgres
+ * ({@code -Dbench.jdbcUrl}, the database is wiped and reseeded).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcRepositoriesDbBenchmark {
+    private static final int CARS = 200;
+    private static final int CLIENTS = 1000;
+    private static final int PER_CLIENT = 50;
+
+    private HikariDataSource ds;
+    private long[][] ownedRentals;
+    private JdbcCarRepository cars;
+    private JdbcClientRepository clients;
+    private JdbcReservationRepository reservations;
+    private final LocalDate from = LocalDate.of(1905, 6, 1);
+    private final LocalDate to = LocalDate.of(1905, 6, 5);
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        ds = Fixtures.seededDataSource(CARS, CLIENTS, PER_CLIENT);
+        cars = new JdbcCarRepository(ds);
+        clients = new JdbcClientRepository(ds);
+        reservations = new JdbcReservationRepository(ds);
+        ownedRentals = JdbcUtils.queryList(ds, "SELECT rental_id, client_id FROM reservations ORDER BY random() LIMIT 1000",
+                null, rs -> new long[]{rs.getLong(1), rs.getLong(2)}).toArray(new long[0][]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ds.close();
+    }
+
+    private static long randomClient() {
+        return 1 + ThreadLocalRandom.current().nextInt(CLIENTS);
+    }
+
+    @Benchmark
+    public List<Car> carListAvailable() {
+        return cars.listAvailable(from, to);
+    }
+
+    @Benchmark
+    public Car carGetById() {
+        return cars.getById(1 + ThreadLocalRandom.current().nextInt(CARS));
+    }
+
+    @Benchmark
+    public List<Car> carListAll() {
+        return cars.listAll();
+    }
+
+    @Benchmark
+    public ClientWithHash clientGetByLogin() {
+        return clients.getByLogin("bench" + randomClient());
+    }
+
+    @Benchmark
+    public boolean clientExistsEmail() {
+        return clients.existsEmail("bench" + randomClient() + "@mail.com");
+    }
+
+    @Benchmark
+    public boolean reservationIsClientAllowed() {
+        return reservations.isClientAllowed(randomClient());
+    }
+
+    @Benchmark
+    public List<ReservationView> reservationListByClient() {
+        return reservations.listByClient(randomClient());
+    }
+
+    @Benchmark
+    public ReservationView reservationGetByIdForClient() {
+        long[] owned = ownedRentals[ThreadLocalRandom.current().nextInt(ownedRentals.length)];
+        return reservations.getByIdForClient(owned[0], owned[1]);
+    }
+
+    @Benchmark
+    public List<BookedRange> reservationListActiveRanges() {
+        return reservations.listActiveRanges(LocalDate.of(2000, 1, 1));
+    }
+}
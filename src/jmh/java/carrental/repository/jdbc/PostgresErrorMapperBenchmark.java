@@ -0,0 +1,43 @@
+package carrental.repository.jdbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostgresErrorMapperBenchmark {
+    private final SQLException overlap = new SQLException(
+            "ERROR: conflicting key value violates exclusion constraint \"reservations_no_overlap\"", "23P01");
+    private final SQLException raised = new SQLException(
+            "ERROR: car is not available for selected dates", "P0001");
+    private final SQLException unknown = new SQLException("ERROR: connection reset", "08006");
+
+    @Benchmark
+    public RuntimeException exclusionViolation() {
+        return PostgresErrorMapper.map(overlap);
+    }
+
+    @Benchmark
+    public RuntimeException raisedException() {
+        return PostgresErrorMapper.map(raised);
+    }
+
+    @Benchmark
+    public RuntimeException unmapped() {
+        return PostgresErrorMapper.map(unknown);
+    }
+}
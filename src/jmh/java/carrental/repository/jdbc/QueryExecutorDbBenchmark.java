@@ -0,0 +1,144 @@
+package carrental.repository.jdbc;
+
+import carrental.bench.Fixtures;
+import carrental.domain.model.Car;
+import carrental.domain.model.ReservationView;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JdbcUtils} (prepare and close per call, columns by name) against {@link QueryExecutor}
+ * (statement kept per connection, columns by position) on the same SQL, for a one-row lookup
+ * and a 50-row, 14-column list. {@code executorByName} keeps the statement but reads columns by
+ * name, to separate the two effects. The pool is configured like the application's, with
+ * {@code prepareThreshold} as a parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryExecutorDbBenchmark {
+    private static final int CARS = 200;
+    private static final int CLIENTS = 1000;
+    private static final int PER_CLIENT = 50;
+
+    private static final String CAR_SQL = """
+            SELECT car_id, plate_number, brand, model, COALESCE(status,'available') AS status,
+                   daily_cost, insurance_cost, prod_year
+            FROM cars
+            WHERE car_id = ?
+            """;
+    private static final String RESERVATIONS_SQL = """
+            SELECT rental_id, client_id, full_name, car_id, plate_number, brand, model, date_from, date_to,
+                   status, daily_rate_at_booking, total_amount, penalty_amount, deposit_amount
+            FROM vw_client_reservations
+            WHERE client_id = ?
+            ORDER BY date_from DESC, rental_id DESC
+            """;
+    private static final QueryExecutor.Query CAR = QueryExecutor.register("bench.car", CAR_SQL);
+    private static final QueryExecutor.Query RESERVATIONS = QueryExecutor.register("bench.reservations", RESERVATIONS_SQL);
+
+    @Param({"1", "5"})
+    public int prepareThreshold;
+
+    private HikariDataSource ds;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        Fixtures.seededDataSource(CARS, CLIENTS, PER_CLIENT).close();
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl(Fixtures.JDBC_URL);
+        hc.setUsername(Fixtures.DB_USER);
+        hc.setPassword(Fixtures.DB_PASSWORD);
+        hc.addDataSourceProperty("prepareThreshold", prepareThreshold);
+        ds = new HikariDataSource(hc);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ds.close();
+    }
+
+    private static long randomCar() {
+        return 1 + ThreadLocalRandom.current().nextInt(CARS);
+    }
+
+    private static long randomClient() {
+        return 1 + ThreadLocalRandom.current().nextInt(CLIENTS);
+    }
+
+    @Benchmark
+    public Car carJdbcUtils() throws SQLException {
+        long id = randomCar();
+        return JdbcUtils.queryOne(ds, CAR_SQL, ps -> ps.setLong(1, id), QueryExecutorDbBenchmark::carByName);
+    }
+
+    @Benchmark
+    public Car carExecutor() throws SQLException {
+        return QueryExecutor.one(ds, CAR, randomCar(), QueryExecutorDbBenchmark::carByIndex);
+    }
+
+    @Benchmark
+    public List<ReservationView> reservationsJdbcUtils() throws SQLException {
+        long id = randomClient();
+        return JdbcUtils.queryList(ds, RESERVATIONS_SQL, ps -> ps.setLong(1, id),
+                QueryExecutorDbBenchmark::reservationByName);
+    }
+
+    @Benchmark
+    public List<ReservationView> reservationsExecutorByName() throws SQLException {
+        return QueryExecutor.list(ds, RESERVATIONS, randomClient(), QueryExecutorDbBenchmark::reservationByName);
+    }
+
+    @Benchmark
+    public List<ReservationView> reservationsExecutor() throws SQLException {
+        return QueryExecutor.list(ds, RESERVATIONS, randomClient(), QueryExecutorDbBenchmark::reservationByIndex);
+    }
+
+    private static Car carByName(ResultSet rs) throws SQLException {
+        return new Car(rs.getLong("car_id"), rs.getString("plate_number"), rs.getString("brand"),
+                rs.getString("model"), rs.getString("status"), rs.getBigDecimal("daily_cost"),
+                rs.getBigDecimal("insurance_cost"), (Integer) rs.getObject("prod_year"));
+    }
+
+    private static Car carByIndex(ResultSet rs) throws SQLException {
+        return new Car(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                rs.getBigDecimal(6), rs.getBigDecimal(7), (Integer) rs.getObject(8));
+    }
+
+    private static ReservationView reservationByName(ResultSet rs) throws SQLException {
+        return new ReservationView(rs.getLong("rental_id"), rs.getLong("client_id"), rs.getString("full_name"),
+                rs.getLong("car_id"), rs.getString("plate_number"), rs.getString("brand"), rs.getString("model"),
+                rs.getDate("date_from").toLocalDate(), rs.getDate("date_to").toLocalDate(), rs.getString("status"),
+                rs.getBigDecimal("daily_rate_at_booking"), rs.getBigDecimal("total_amount"),
+                rs.getBigDecimal("penalty_amount"), rs.getBigDecimal("deposit_amount"));
+    }
+
+    private static ReservationView reservationByIndex(ResultSet rs) throws SQLException {
+        return new ReservationView(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getLong(4), rs.getString(5),
+                rs.getString(6), rs.getString(7), rs.getDate(8).toLocalDate(), rs.getDate(9).toLocalDate(),
+                rs.getString(10), rs.getBigDecimal(11), rs.getBigDecimal(12), rs.getBigDecimal(13),
+                rs.getBigDecimal(14));
+    }
+}
@@ -2,58 +2,309 @@ package carrental;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.util.DriverDataSource;
 import io.javalin.Javalin;
 import org.flywaydb.core.Flyway;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import carrental.config.AppConfig;
 import carrental.api.ApiRoutes;
+import carrental.api.HandlerWarmup;
+import carrental.api.Readiness;
+import carrental.domain.model.Car;
+import carrental.metrics.HikariMetrics;
+import carrental.metrics.MetricsRegistry;
+import carrental.metrics.RepositoryTimers;
 import carrental.repository.CarRepository;
 import carrental.repository.ClientRepository;
+import carrental.repository.IdempotencyKeyRepository;
+import carrental.repository.RecoveryTokenRepository;
+import carrental.repository.ReservationEventRepository;
 import carrental.repository.ReservationRepository;
 import carrental.repository.jdbc.JdbcCarRepository;
 import carrental.repository.jdbc.JdbcClientRepository;
+import carrental.repository.jdbc.JdbcIdempotencyKeyRepository;
+import carrental.repository.jdbc.JdbcRecoveryTokenRepository;
+import carrental.repository.jdbc.JdbcReservationEventRepository;
 import carrental.repository.jdbc.JdbcReservationRepository;
+import carrental.repository.jdbc.JdbcWarmup;
+import carrental.repository.jdbc.ReplicaRouting;
+import carrental.repository.jdbc.ShardSet;
+import carrental.repository.jdbc.ShardedCarRepository;
+import carrental.repository.jdbc.ShardedReservationRepository;
+import carrental.repository.memory.InMemoryRecoveryTokenRepository;
 import carrental.service.AuthService;
+import carrental.service.AvailabilityIndex;
 import carrental.service.CarsService;
+import carrental.service.PasswordHasher;
+import carrental.service.IdempotencyService;
+import carrental.service.RecoveryTokenCleanup;
+import carrental.service.ReservationEventLog;
 import carrental.service.ReservationsService;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
 
 public final class CarRentalApplication {
 
-    public static void main(String[] args) {
+    private static final Logger log = LoggerFactory.getLogger(CarRentalApplication.class);
+
+    /** How often bookings a failed cross-shard batch could not delete are retried. */
+    private static final long SHARD_UNDO_RETRY_SECONDS = 30;
+
+    public static void main(String[] args) throws SQLException {
+        long started = System.nanoTime();
         AppConfig cfg = AppConfig.fromEnv();
+        AppConfig.Startup startup = cfg.startup();
+
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        Optional<CheckpointHooks> checkpoints = ServiceLoader.load(CheckpointHooks.class).findFirst();
+        HikariDataSource ds = buildDataSource("primary", cfg.jdbcUrl(), cfg, cfg.dbPool(), metrics, checkpoints.isPresent());
+        AppConfig.Replica replicaCfg = cfg.replica();
+        HikariDataSource replica = replicaCfg.jdbcUrl() == null ? null
+                : buildDataSource("replica", replicaCfg.jdbcUrl(), cfg, replicaCfg.pool(), metrics, checkpoints.isPresent());
+        long t = System.nanoTime();
+        migrate(ds, startup.flywayMode());
+        log.info("flyway {} took {} ms", startup.flywayMode(), millisSince(t));
+
+        AppConfig.Shards shardCfg = cfg.shards();
+        List<HikariDataSource> shardPools = new ArrayList<>();
+        for (int i = 0; i < shardCfg.jdbcUrls().size(); i++) {
+            HikariDataSource shard = buildDataSource("shard-" + i, shardCfg.jdbcUrls().get(i), cfg, shardCfg.pool(),
+                    metrics, checkpoints.isPresent());
+            shardPools.add(shard);
+            migrate(shard, startup.flywayMode());
+            ShardSet.prepare(shard, i, shardCfg.jdbcUrls().size());
+        }
+        if (shardCfg.enabled()) {
+            log.info("reservations sharded by car_id over {} databases", shardPools.size());
+            if (replica != null) log.warn("REPLICA_JDBC_URL is ignored for cars and reservations when they are sharded");
+        }
+
+        if (startup.prewarmPool()) {
+            t = System.nanoTime();
+            int warmed = JdbcWarmup.prewarm(ds, Math.max(1, ds.getMinimumIdle()), cfg.dbPool().prepareThreshold());
+            log.info("prepared hot statements on {} pool connections in {} ms", warmed, millisSince(t));
+            if (replica != null) prewarmReplica(replica, cfg.dbPool().prepareThreshold());
+            for (HikariDataSource shard : shardPools) {
+                JdbcWarmup.prewarm(shard, Math.max(1, shard.getMinimumIdle()), cfg.dbPool().prepareThreshold());
+            }
+        }
+        ReplicaRouting reads = replica == null ? ReplicaRouting.primaryOnly(ds)
+                : new ReplicaRouting(ds, replica, replicaCfg.stickyMs(), replicaCfg.retryMs());
+
+        ClientRepository clientRepo = RepositoryTimers.wrap(metrics, ClientRepository.class, new JdbcClientRepository(ds));
+        ShardSet shards = shardCfg.enabled() ? new ShardSet(shardPools) : null;
+        CarRepository carRepo = RepositoryTimers.wrap(metrics, CarRepository.class, shards != null
+                ? new ShardedCarRepository(shards)
+                : new JdbcCarRepository(ds, reads));
+        ShardedReservationRepository shardedRes = shards != null ? new ShardedReservationRepository(ds, shards) : null;
+        ReservationRepository resRepo = RepositoryTimers.wrap(metrics, ReservationRepository.class, shardedRes != null
+                ? shardedRes
+                : new JdbcReservationRepository(ds, reads));
+        if (shardedRes != null) shardedRes.scheduleUndoRetry(SHARD_UNDO_RETRY_SECONDS);
+
+        AvailabilityIndex availability = new AvailabilityIndex(carRepo, resRepo);
+        t = System.nanoTime();
+        availability.load();
+        log.info("availability index loaded in {} ms", millisSince(t));
+        availability.scheduleResync(cfg.availabilityResyncSeconds());
+
+        PasswordHasher hasher = new PasswordHasher(cfg.bcryptThreads(), cfg.bcryptQueue(), cfg.bcryptCost());
+
+        RecoveryTokenRepository recoveryRepo = RepositoryTimers.wrap(metrics, RecoveryTokenRepository.class,
+                AppConfig.RECOVERY_STORE_MEMORY.equals(cfg.recoveryStore())
+                        ? new InMemoryRecoveryTokenRepository(cfg.recoveryMaxTokens())
+                        : new JdbcRecoveryTokenRepository(ds));
+        RecoveryTokenCleanup cleanup = new RecoveryTokenCleanup(recoveryRepo);
+        cleanup.schedule(cfg.recoveryCleanupSeconds());
 
-        DataSource ds = buildDataSource(cfg);
-        migrate(ds);
+        AuthService authUC = new AuthService(clientRepo, hasher, recoveryRepo, cfg.jwtSecret());
+        CarsService carsUC = new CarsService(carRepo, resRepo, availability,
+                cfg.carCacheSize(), TimeUnit.SECONDS.toMillis(cfg.carCacheTtlSeconds()),
+                cfg.carSearchCacheSize(), cfg.carSearchCacheMs());
+        availability.addCarsListener(carsUC::invalidateCars);
+        AppConfig.EventLog eventCfg = cfg.eventLog();
+        ReservationEventLog events = new ReservationEventLog(
+                RepositoryTimers.wrap(metrics, ReservationEventRepository.class, new JdbcReservationEventRepository(ds)),
+                eventCfg.queueSize(), eventCfg.batchSize(), Path.of(eventCfg.spillPath()));
+        events.start();
+        ReservationsService resUC = new ReservationsService(resRepo, availability, events);
+        AppConfig.Idempotency idemCfg = cfg.idempotency();
+        IdempotencyService idempotency = new IdempotencyService(
+                RepositoryTimers.wrap(metrics, IdempotencyKeyRepository.class, new JdbcIdempotencyKeyRepository(ds)),
+                idemCfg.cacheSize(), TimeUnit.SECONDS.toMillis(idemCfg.ttlSeconds()));
+        idempotency.schedulePurge(idemCfg.purgeSeconds());
 
-        ClientRepository clientRepo = new JdbcClientRepository(ds);
-        CarRepository carRepo = new JdbcCarRepository(ds);
-        ReservationRepository resRepo = new JdbcReservationRepository(ds);
+        if (reads.hasReplica()) {
+            metrics.counter("replica_reads_total", "Reads answered by the read replica", reads::replicaReads);
+            metrics.counter("replica_sticky_reads_total", "Reads kept on the primary after the client's own write", reads::stickyReads);
+            metrics.counter("replica_fallbacks_total", "Reads sent to the primary because the replica was unavailable", reads::fallbacks);
+        }
+        metrics.counter("car_cache_hits_total", "Car lookups served from the cache", carsUC::cacheHits);
+        metrics.counter("car_cache_misses_total", "Car lookups that went to the database", carsUC::cacheMisses);
+        metrics.counter("car_cache_evictions_total", "Cars evicted from the cache by size", carsUC::cacheEvictions);
+        metrics.gauge("car_cache_size", "Cars currently cached", carsUC::cacheSize);
+        metrics.counter("car_search_queries_total", "Availability searches that ran a database query", carsUC::searchQueries);
+        metrics.counter("car_search_coalesced_total", "Availability searches that shared a query already in flight", carsUC::searchesCoalesced);
+        metrics.counter("car_search_cache_hits_total", "Availability searches answered by a recent identical query", carsUC::searchCacheHits);
+        metrics.gauge("bcrypt_queue_depth", "Password hashing tasks waiting for a thread", hasher::queued);
+        metrics.gauge("bcrypt_active", "Password hashing tasks running", hasher::active);
+        metrics.counter("bcrypt_rejected_total", "Password hashing tasks rejected because the queue was full", hasher::rejected);
+        metrics.counter("idempotency_replays_total", "Retried requests answered with the stored response", idempotency::replays);
+        metrics.counter("idempotency_coalesced_total", "Duplicate requests that waited for the first one in flight", idempotency::coalesced);
+        metrics.gauge("idempotency_cache_size", "Finished idempotent responses kept in memory", idempotency::cacheSize);
+        metrics.gauge("reservation_events_queued", "Reservation events waiting for the writer", events::queued);
+        metrics.counter("reservation_events_written_total", "Reservation events stored in the database", events::written);
+        metrics.counter("reservation_events_spilled_total", "Reservation events appended to the spill file", events::spilled);
+        metrics.counter("reservation_events_write_failures_total", "Event batches the database rejected", events::writeFailures);
+        metrics.counter("reservation_events_lost_total", "Reservation events that could be neither stored nor spilled", events::lost);
 
-        AuthService authUC = new AuthService(clientRepo, cfg.jwtSecret());
-        CarsService carsUC = new CarsService(carRepo);
-        ReservationsService resUC = new ReservationsService(resRepo);
+        Readiness readiness = new Readiness();
+        metrics.gauge("http_in_flight_requests", "Requests currently being handled", readiness::inFlight);
 
-        Javalin app = ApiRoutes.build(cfg, authUC, carsUC, resUC);
+        Javalin app = ApiRoutes.build(cfg, metrics, readiness, authUC, carsUC, resUC, idempotency);
+        try {
+            app.start(cfg.httpPort());
+        } catch (RuntimeException e) {
+            // The schedulers started above would keep a half-started process alive.
+            log.error("cannot start HTTP server", e);
+            System.exit(1);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shutdown(startup, readiness, app);
+            events.close();
+            cleanup.close();
+            idempotency.close();
+            availability.close();
+            hasher.close();
+            if (shardedRes != null) shardedRes.close();
+            if (shards != null) shards.close();
+            shardPools.forEach(HikariDataSource::close);
+            if (replica != null) replica.close();
+            ds.close();
+        }, "graceful-shutdown"));
+
+        if (startup.warmupRequests() > 0) {
+            t = System.nanoTime();
+            List<Car> cars = carsUC.listAvailable(null, null);
+            long carId = cars.isEmpty() ? 1 : cars.get(0).carId();
+            int answered = HandlerWarmup.run(cfg.httpPort(), startup.warmupRequests(), carId);
+            log.info("handler warm-up: {} requests in {} ms", answered, millisSince(t));
+        }
+
+        checkpoints.ifPresent(hooks -> {
+            ServerCheckpoint cp = new ServerCheckpoint(readiness, app, ds, replica, shardPools, availability, carsUC,
+                    startup.prewarmPool(), cfg.dbPool().prepareThreshold(), startup.shutdownTimeoutMs());
+            hooks.register(cp::beforeCheckpoint, cp::afterRestore);
+        });
+
+        readiness.markReady();
+        double startupSeconds = (System.nanoTime() - started) / 1e9;
+        metrics.gauge("app_startup_seconds", "Time from process start of main() until the instance reported ready",
+                () -> startupSeconds);
+        log.info("ready in {} ms", millisSince(started));
+
+        if (startup.exitWhenReady()) {
+            log.info("training run finished, exiting");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * SIGTERM sequence: report not-ready and keep serving for the drain delay while the load
+     * balancer takes the instance out, then turn new requests away with 503, wait for the ones
+     * in flight (bounded by the shutdown timeout) and stop the server.
+     */
+    private static void shutdown(AppConfig.Startup startup, Readiness readiness, Javalin app) {
+        log.info("shutting down: not ready, draining for {} ms", startup.drainDelayMs());
+        readiness.markDraining();
+        try {
+            Thread.sleep(startup.drainDelayMs());
+            readiness.close();
+            if (!readiness.awaitIdle(startup.shutdownTimeoutMs())) {
+                log.warn("{} requests still in flight after {} ms, stopping anyway",
+                        readiness.inFlight(), startup.shutdownTimeoutMs());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        app.stop();
+    }
+
+    private static long millisSince(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
 
-        app.start(cfg.httpPort());
+    /** A replica that is down must not stop the instance from starting: its reads fall back to the primary. */
+    static void prewarmReplica(HikariDataSource replica, int prepareThreshold) {
+        long t = System.nanoTime();
+        try {
+            int warmed = JdbcWarmup.prewarmReplica(replica, Math.max(1, replica.getMinimumIdle()), prepareThreshold);
+            log.info("prepared hot statements on {} replica connections in {} ms", warmed, millisSince(t));
+        } catch (SQLException e) {
+            log.warn("replica pre-warm failed, its reads go to the primary until it answers: {}", e.toString());
+        }
     }
 
-    private static DataSource buildDataSource(AppConfig cfg) {
+    private static HikariDataSource buildDataSource(String name, String jdbcUrl, AppConfig cfg, AppConfig.DbPool pool,
+                                                    MetricsRegistry metrics, boolean checkpointable) {
         HikariConfig hc = new HikariConfig();
-        hc.setJdbcUrl(cfg.jdbcUrl());
+        hc.setPoolName(name);
+        hc.setJdbcUrl(jdbcUrl);
         hc.setUsername(cfg.dbUser());
         hc.setPassword(cfg.dbPassword());
+        hc.setMaximumPoolSize(pool.maxSize());
+        if (cfg.virtualThreads() || pool.minIdle() < 0) {
+            // Thousands of virtual threads may queue on getConnection(); keep the pool fixed-size
+            // so no request ever waits for a physical connection to be opened on its behalf.
+            hc.setMinimumIdle(pool.maxSize());
+        } else {
+            hc.setMinimumIdle(pool.minIdle());
+        }
+        hc.setConnectionTimeout(pool.connectionTimeoutMs());
+        hc.setIdleTimeout(pool.idleTimeoutMs());
+        hc.setMaxLifetime(pool.maxLifetimeMs());
+        hc.setLeakDetectionThreshold(pool.leakDetectionMs());
+        hc.addDataSourceProperty("prepareThreshold", pool.prepareThreshold());
+        hc.addDataSourceProperty("preparedStatementCacheQueries", pool.statementCacheQueries());
+        hc.addDataSourceProperty("preparedStatementCacheSizeMiB", pool.statementCacheSizeMiB());
+        hc.setMetricsTrackerFactory(new HikariMetrics(metrics));
+        if ("replica".equals(name)) {
+            // Start without it (the pool keeps trying in the background) and never write through it.
+            hc.setInitializationFailTimeout(-1);
+            hc.setReadOnly(true);
+        }
+        if (checkpointable) {
+            hc.setAllowPoolSuspension(true);
+            hc.setDataSource(new PhysicalConnections(new DriverDataSource(hc.getJdbcUrl(), hc.getDriverClassName(),
+                    hc.getDataSourceProperties(), hc.getUsername(), hc.getPassword())));
+        }
         return new HikariDataSource(hc);
     }
 
-    private static void migrate(DataSource ds) {
-        Flyway.configure()
+    /**
+     * {@code validate} fails startup if the schema differs from the bundled migrations without
+     * changing anything, for instances started after a separate migration step.
+     */
+    private static void migrate(DataSource ds, String mode) {
+        if (AppConfig.FLYWAY_SKIP.equals(mode)) return;
+        Flyway flyway = Flyway.configure()
                 .dataSource(ds)
                 .locations("classpath:db/migration")
-                .load()
-                .migrate();
+                .load();
+        if (AppConfig.FLYWAY_VALIDATE.equals(mode)) {
+            flyway.validate();
+        } else {
+            flyway.migrate();
+        }
     }
 }
@@ -0,0 +1,10 @@
+package carrental;
+
+/**
+ * Hook into a checkpoint/restore runtime such as CRaC. Implementations are found with
+ * {@link java.util.ServiceLoader}; the default build ships none, the {@code crac} profile adds
+ * one backed by {@code org.crac}.
+ */
+public interface CheckpointHooks {
+    void register(Runnable beforeCheckpoint, Runnable afterRestore);
+}
@@ -0,0 +1,94 @@
+package carrental;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Counts the physical connections the pool has open. Hikari closes evicted connections on a
+ * background thread, so its own counters drop before the sockets are gone; a checkpoint has to
+ * wait for the sockets. Every call on a counted connection goes through a reflective proxy,
+ * which is why the pool is wrapped only when a checkpoint runtime is present.
+ */
+final class PhysicalConnections implements DataSource {
+    private final DataSource target;
+    private final AtomicInteger open = new AtomicInteger();
+
+    PhysicalConnections(DataSource target) {
+        this.target = target;
+    }
+
+    int open() {
+        return open.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(target.getConnection(username, password));
+    }
+
+    private Connection track(Connection c) {
+        open.incrementAndGet();
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (p, m, args) -> {
+                    String name = m.getName();
+                    try {
+                        return m.invoke(c, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if ((name.equals("close") || name.equals("abort")) && closed.compareAndSet(false, true)) {
+                            open.decrementAndGet();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return target.isWrapperFor(iface);
+    }
+}
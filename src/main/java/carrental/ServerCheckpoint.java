@@ -0,0 +1,171 @@
+package carrental;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.javalin.Javalin;
+import org.eclipse.jetty.server.Connector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import carrental.api.Readiness;
+import carrental.repository.jdbc.JdbcWarmup;
+import carrental.service.AvailabilityIndex;
+import carrental.service.CarsService;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * What the process does around a checkpoint. Before: report not-ready, let running requests
+ * finish, close the HTTP connectors and every pool connection, since a checkpoint cannot hold
+ * open sockets. After restore: reopen the pool (preparing the hot statements again, the server
+ * side ones died with the old connections), reload the availability index and drop the car
+ * caches, reopen the connectors and report ready. If the preparation fails part-way, the
+ * pools, connectors and readiness are put back and the instance keeps serving.
+ */
+final class ServerCheckpoint {
+    private static final Logger log = LoggerFactory.getLogger(ServerCheckpoint.class);
+
+    private static final long POLL_MS = 10;
+
+    private final Readiness readiness;
+    private final Javalin app;
+    private final HikariDataSource ds;
+    private final HikariDataSource replica;
+    private final List<HikariDataSource> shards;
+    private final AvailabilityIndex availability;
+    private final CarsService cars;
+    private final boolean prewarm;
+    private final int prepareThreshold;
+    private final long timeoutMs;
+    private int minIdle;
+    private int replicaMinIdle;
+    private final int[] shardMinIdle;
+
+    /** {@code replica} may be {@code null}. Every pool must be built on {@link PhysicalConnections}. */
+    ServerCheckpoint(Readiness readiness, Javalin app, HikariDataSource ds, HikariDataSource replica,
+                     List<HikariDataSource> shards, AvailabilityIndex availability, CarsService cars,
+                     boolean prewarm, int prepareThreshold, long timeoutMs) {
+        this.readiness = readiness;
+        this.app = app;
+        this.ds = ds;
+        this.replica = replica;
+        this.shards = shards;
+        this.availability = availability;
+        this.cars = cars;
+        this.shardMinIdle = new int[shards.size()];
+        this.prewarm = prewarm;
+        this.prepareThreshold = prepareThreshold;
+        this.timeoutMs = timeoutMs;
+    }
+
+    void beforeCheckpoint() {
+        long t = System.nanoTime();
+        // Read before anything changes, so both a rollback and the restore put back the real values.
+        minIdle = ds.getMinimumIdle();
+        if (replica != null) replicaMinIdle = replica.getMinimumIdle();
+        for (int i = 0; i < shards.size(); i++) {
+            shardMinIdle[i] = shards.get(i).getMinimumIdle();
+        }
+
+        readiness.suspend();
+        try {
+            if (!readiness.awaitIdle(timeoutMs)) {
+                throw new IllegalStateException(readiness.inFlight() + " requests still in flight");
+            }
+            for (Connector c : app.jettyServer().server().getConnectors()) {
+                c.stop();
+            }
+
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            closeAll(ds, deadline);
+            if (replica != null) closeAll(replica, deadline);
+            for (HikariDataSource shard : shards) {
+                closeAll(shard, deadline);
+            }
+        } catch (Exception e) {
+            rollBack(e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted before checkpoint", e);
+            }
+            if (e instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("cannot stop HTTP connectors", e);
+        }
+        log.info("ready for checkpoint in {} ms", (System.nanoTime() - t) / 1_000_000);
+    }
+
+    /** A checkpoint that could not be prepared: go back to serving as if it was never attempted. */
+    private void rollBack(Exception cause) {
+        try {
+            resumePools();
+            startConnectors();
+            readiness.resume();
+            log.warn("checkpoint aborted, serving again", cause);
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void closeAll(HikariDataSource pool, long deadline) throws InterruptedException {
+        // Suspending blocks new borrowers; with minimumIdle at 0 the housekeeper stops
+        // refilling, and soft eviction closes connections as they come back idle.
+        PhysicalConnections physical = (PhysicalConnections) pool.getDataSource();
+        HikariPoolMXBean mx = pool.getHikariPoolMXBean();
+        pool.getHikariConfigMXBean().setMinimumIdle(0);
+        mx.suspendPool();
+        mx.softEvictConnections();
+        while (physical.open() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IllegalStateException(physical.open() + " " + pool.getPoolName() + " connections still open");
+            }
+            Thread.sleep(POLL_MS);
+        }
+    }
+
+    void afterRestore() {
+        long t = System.nanoTime();
+        resumePools();
+        if (prewarm) {
+            try {
+                JdbcWarmup.prewarm(ds, Math.max(1, minIdle), prepareThreshold);
+                for (int i = 0; i < shards.size(); i++) {
+                    JdbcWarmup.prewarm(shards.get(i), Math.max(1, shardMinIdle[i]), prepareThreshold);
+                }
+            } catch (SQLException e) {
+                // Not fatal: the pool opens connections on demand.
+                log.warn("pool pre-warm after restore failed", e);
+            }
+            if (replica != null) CarRentalApplication.prewarmReplica(replica, prepareThreshold);
+        }
+        // The index and caches are the checkpoint's, possibly days old: searches the index covers
+        // never reach the database, so they must be current before traffic comes back.
+        availability.load();
+        cars.invalidateCars();
+        startConnectors();
+        readiness.resume();
+        log.info("restored and ready in {} ms", (System.nanoTime() - t) / 1_000_000);
+    }
+
+    private void resumePools() {
+        ds.getHikariConfigMXBean().setMinimumIdle(minIdle);
+        ds.getHikariPoolMXBean().resumePool();
+        if (replica != null) {
+            replica.getHikariConfigMXBean().setMinimumIdle(replicaMinIdle);
+            replica.getHikariPoolMXBean().resumePool();
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).getHikariConfigMXBean().setMinimumIdle(shardMinIdle[i]);
+            shards.get(i).getHikariPoolMXBean().resumePool();
+        }
+    }
+
+    private void startConnectors() {
+        try {
+            for (Connector c : app.jettyServer().server().getConnectors()) {
+                c.start();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("cannot reopen HTTP connectors", e);
+        }
+    }
+}
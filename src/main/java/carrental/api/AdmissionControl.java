@@ -0,0 +1,56 @@
+package carrental.api;
+
+import io.javalin.http.Context;
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
+import carrental.metrics.Counter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of API requests in flight so a burst queues briefly here instead of piling
+ * up on the connection pool. A request that cannot get a permit within {@code waitMillis}
+ * is answered with 503.
+ */
+final class AdmissionControl {
+    private static final String ATTR_PERMIT = "admission_permit";
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long waitMillis;
+    private final Counter rejected;
+
+    AdmissionControl(int maxConcurrent, long waitMillis, Counter rejected) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.waitMillis = waitMillis;
+        this.rejected = rejected;
+    }
+
+    void acquire(Context ctx) {
+        boolean ok;
+        try {
+            ok = permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+        }
+        if (!ok) {
+            rejected.inc();
+            throw new DomainException(ErrorCode.UNAVAILABLE, "server busy");
+        }
+        ctx.attribute(ATTR_PERMIT, Boolean.TRUE);
+    }
+
+    void release(Context ctx) {
+        if (ctx.attribute(ATTR_PERMIT) != null) {
+            ctx.attribute(ATTR_PERMIT, null);
+            permits.release();
+        }
+    }
+
+    int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
@@ -1,40 +1,109 @@
 package carrental.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.javalin.Javalin;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.Header;
 import io.javalin.http.HttpStatus;
 import io.javalin.json.JavalinJackson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import carrental.api.dto.BatchItemResponse;
 import carrental.api.dto.CreateReservationRequest;
 import carrental.api.dto.LoginRequest;
 import carrental.api.dto.PasswordRecoveryRequest;
 import carrental.api.dto.RegisterRequest;
+import carrental.api.dto.ReservationPageResponse;
 import carrental.config.AppConfig;
 import carrental.domain.error.DomainException;
 import carrental.domain.error.ErrorCode;
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookingRequest;
+import carrental.domain.model.Car;
+import carrental.domain.model.CarCalendar;
+import carrental.domain.model.ReservationCursor;
+import carrental.domain.model.ReservationPage;
+import carrental.domain.model.ReservationView;
+import carrental.metrics.MetricsRegistry;
 import carrental.service.AuthService;
 import carrental.service.CarsService;
+import carrental.service.IdempotencyService;
 import carrental.service.ReservationsService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public final class ApiRoutes {
+    private static final Logger log = LoggerFactory.getLogger(ApiRoutes.class);
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String LISTING_CACHE_CONTROL = "no-cache";
+    private static final String CAR_CACHE_CONTROL = "public, max-age=60";
+    private static final int DEFAULT_CALENDAR_DAYS = 90;
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+    private static final int MAX_PAGE_LIMIT = 500;
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
     private ApiRoutes() {
     }
 
     public static Javalin build(AppConfig cfg,
+                                MetricsRegistry metrics,
+                                Readiness readiness,
                                 AuthService authUC,
                                 CarsService carsUC,
-                                ReservationsService resUC) {
+                                ReservationsService resUC,
+                                IdempotencyService idempotency) {
 
-        JwtService jwt = new JwtService(cfg.jwtSecret());
+        JwtService jwt = new JwtService(cfg.jwtSecret(), cfg.jwtCacheSize());
         AuthMiddleware auth = new AuthMiddleware(jwt);
 
+        metrics.counter("jwt_cache_hits_total", "Token verifications served from the cache", jwt::cacheHits);
+        metrics.counter("jwt_cache_misses_total", "Token verifications that ran the full HMAC check", jwt::cacheMisses);
+        metrics.gauge("jwt_cache_size", "Verified tokens currently cached", jwt::cacheSize);
+
+        JavalinJackson json = new JavalinJackson().updateMapper(m -> m.registerModule(ResponseJson.module()));
+        ObjectWriter carWriter = json.getMapper().writerFor(Car.class);
+        ObjectWriter carListWriter = json.getMapper().writerFor(new TypeReference<List<Car>>() {});
+        ObjectWriter reservationListWriter = json.getMapper().writerFor(new TypeReference<List<ReservationView>>() {});
+        ObjectWriter reservationPageWriter = json.getMapper().writerFor(ReservationPageResponse.class);
+        Function<Car, byte[]> carJson = car -> encode(carWriter, car);
+
+        RequestMetrics requestMetrics = new RequestMetrics(metrics);
+
         Javalin app = Javalin.create(jc -> {
-            jc.http.defaultContentType = "application/json; charset=utf-8";
-            jc.jsonMapper(new JavalinJackson());
+            jc.http.defaultContentType = JSON_CONTENT_TYPE;
+            jc.requestLogger.http(requestMetrics::record);
+            jc.useVirtualThreads = cfg.virtualThreads();
+            jc.jsonMapper(json);
+            jc.http.customCompression(compression(cfg.compression()));
+            if (!cfg.rateLimits().trustedProxies().isEmpty()) {
+                jc.contextResolver.ip = new TrustedProxies(cfg.rateLimits().trustedProxies())::clientIp;
+            }
         });
 
         app.exception(DomainException.class, (e, ctx) -> {
@@ -44,21 +113,51 @@ public final class ApiRoutes {
                 case NOT_FOUND -> HttpStatus.NOT_FOUND;
                 case UNAUTHORIZED -> HttpStatus.UNAUTHORIZED;
                 case CLIENT_BLOCKED -> HttpStatus.FORBIDDEN;
+                case UNAVAILABLE -> HttpStatus.SERVICE_UNAVAILABLE;
+                case RATE_LIMITED -> HttpStatus.TOO_MANY_REQUESTS;
                 default -> HttpStatus.INTERNAL_SERVER_ERROR;
             };
+            requestMetrics.rejected(ctx);
+            requestMetrics.error(ctx, e.code());
+            if (st == HttpStatus.SERVICE_UNAVAILABLE) ctx.header("Retry-After", RETRY_AFTER_SECONDS);
             ctx.status(st).json(Map.of("error", e.getMessage(), "status", st.getCode()));
         });
 
         app.exception(Exception.class, (e, ctx) -> {
+            requestMetrics.rejected(ctx);
+            requestMetrics.unhandled();
+            log.error("unhandled exception on {} {}", ctx.method(), ctx.path(), e);
             ctx.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .json(Map.of("error", "internal error", "status", 500));
         });
 
+        // Registered first so every other before-handler, including ones that reject, runs inside it.
+        app.before(readiness::enter);
+        app.after(readiness::exit);
+
+        AppConfig.RateLimits limits = cfg.rateLimits();
+        Handler authLimit = rateLimit(metrics, "auth", limits.authRps(), limits.authBurst(), limits.stripes());
+        Handler carsLimit = rateLimit(metrics, "cars", limits.carsRps(), limits.carsBurst(), limits.stripes());
+        Handler reservationsLimit = rateLimit(metrics, "reservations",
+                limits.reservationsRps(), limits.reservationsBurst(), limits.stripes());
+
+        if (authLimit != null) app.before("/api/v1/auth/*", authLimit);
+        if (carsLimit != null) {
+            app.before("/api/v1/cars", carsLimit);
+            app.before("/api/v1/cars/*", carsLimit);
+        }
+
         app.get("/health", ctx -> ctx.json(Map.of("status", "ok")));
+        app.get("/ready", ctx -> {
+            Readiness.State state = readiness.state();
+            ctx.status(state == Readiness.State.READY ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                    .json(Map.of("status", state.name().toLowerCase()));
+        });
+        app.get("/metrics", ctx -> ctx.contentType(METRICS_CONTENT_TYPE).result(metrics.scrape()));
 
         app.post("/api/v1/auth/register", ctx -> {
             RegisterRequest req = ctx.bodyAsClass(RegisterRequest.class);
-            long id = authUC.register(
+            CompletableFuture<Long> id = authUC.register(
                     req.fullName(),
                     req.passportData(),
                     req.login(),
@@ -67,13 +166,13 @@ public final class ApiRoutes {
                     req.phone(),
                     req.address()
             );
-            ctx.status(HttpStatus.CREATED).json(Map.of("client_id", id));
+            ctx.future(() -> id.thenAccept(v -> ctx.status(HttpStatus.CREATED).json(Map.of("client_id", v))));
         });
 
         app.post("/api/v1/auth/login", ctx -> {
             LoginRequest req = ctx.bodyAsClass(LoginRequest.class);
-            String token = authUC.login(req.login(), req.password());
-            ctx.json(Map.of("token", token));
+            CompletableFuture<String> token = authUC.login(req.login(), req.password());
+            ctx.future(() -> token.thenAccept(v -> ctx.json(Map.of("token", v))));
         });
 
         app.post("/api/v1/auth/password-recovery", ctx -> {
@@ -108,31 +207,134 @@ public final class ApiRoutes {
                 }
             }
 
-            ctx.json(carsUC.listAvailable(from, to));
+            String version = carsUC.listingVersion(from, to);
+            if (version != null) {
+                ctx.header(Header.LAST_MODIFIED, httpDate(carsUC.listingLastModifiedMillis()));
+                if (notModified(ctx, "W/\"a" + version + "\"", LISTING_CACHE_CONTROL)) return;
+            }
+            writeJson(ctx, carListWriter, carsUC.listAvailable(from, to));
         });
 
         app.get("/api/v1/cars/{id}", ctx -> {
             long id = parseId(ctx.pathParam("id"));
-            ctx.json(carsUC.get(id));
+            if (notModified(ctx, "W/\"c" + carsUC.carVersion(id) + "\"", CAR_CACHE_CONTROL)) return;
+            ctx.contentType(JSON_CONTENT_TYPE).result(carsUC.getEncoded(id, carJson));
+        });
+
+        app.get("/api/v1/cars/{id}/calendar", ctx -> {
+            long id = parseId(ctx.pathParam("id"));
+            String fromStr = ctx.queryParam("from");
+            String toStr = ctx.queryParam("to");
+            LocalDate from = (fromStr == null || fromStr.isBlank()) ? LocalDate.now() : parseDate(fromStr, "from");
+            LocalDate to = (toStr == null || toStr.isBlank()) ? from.plusDays(DEFAULT_CALENDAR_DAYS) : parseDate(toStr, "to");
+
+            CarCalendar cal = carsUC.calendar(id, from, to);
+            if (notModified(ctx, calendarTag(cal), LISTING_CACHE_CONTROL)) return;
+            ctx.json(cal);
         });
 
         app.before("/api/v1/reservations", auth);
         app.before("/api/v1/reservations/*", auth);
+        if (reservationsLimit != null) {
+            app.before("/api/v1/reservations", reservationsLimit);
+            app.before("/api/v1/reservations/*", reservationsLimit);
+        }
+
+        if (cfg.admissionMaxConcurrent() > 0) {
+            AdmissionControl admission = new AdmissionControl(cfg.admissionMaxConcurrent(), cfg.admissionWaitMs(),
+                    metrics.counter("admission_rejected_total", "API requests turned away because too many were in flight"));
+            metrics.gauge("admission_in_flight", "API requests currently holding an admission permit", admission::inFlight);
+            app.before("/api/*", admission::acquire);
+            app.after("/api/*", admission::release);
+        }
+
+        ObjectWriter reservationWriter = json.getMapper()
+                .writerFor(ReservationView.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
         app.post("/api/v1/reservations", ctx -> {
             long clientId = requireClientId(ctx);
+            String key = idempotencyKey(ctx);
 
             CreateReservationRequest req = ctx.bodyAsClass(CreateReservationRequest.class);
             LocalDate from = parseDate(req.dateFrom(), "date_from");
             LocalDate to = parseDate(req.dateTo(), "date_to");
 
-            var out = resUC.createAndConfirm(clientId, req.carId(), from, to);
-            ctx.status(HttpStatus.CREATED).json(out);
+            if (key == null) {
+                var out = resUC.createAndConfirm(clientId, req.carId(), from, to);
+                ctx.status(HttpStatus.CREATED).json(out);
+                return;
+            }
+            // A retry gets the first response byte for byte, without touching reservations.
+            byte[] body = idempotency.execute(clientId, key, req.carId() + "|" + from + "|" + to,
+                    () -> encode(reservationWriter, resUC.createAndConfirm(clientId, req.carId(), from, to)));
+            ctx.status(HttpStatus.CREATED).contentType(JSON_CONTENT_TYPE).result(body);
+        });
+
+        ObjectReader batchReader = json.getMapper().readerFor(CreateReservationRequest[].class);
+        app.post("/api/v1/reservations/batch", ctx -> {
+            long clientId = requireClientId(ctx);
+
+            String mode = ctx.queryParamAsClass("mode", String.class).getOrDefault("atomic");
+            if (!mode.equals("atomic") && !mode.equals("best_effort")) {
+                throw new DomainException(ErrorCode.VALIDATION, "mode must be atomic or best_effort");
+            }
+            boolean atomic = mode.equals("atomic");
+
+            // bodyAsClass rejects a JSON null with a NullPointerException.
+            CreateReservationRequest[] body = batchReader.readValue(ctx.bodyAsBytes());
+            if (body == null) throw new DomainException(ErrorCode.VALIDATION, "items must not be empty");
+            List<BookingRequest> items = new ArrayList<>(body.length);
+            for (int i = 0; i < body.length; i++) {
+                CreateReservationRequest r = body[i];
+                if (r == null) throw new DomainException(ErrorCode.VALIDATION, "items[" + i + "] must be an object");
+                items.add(new BookingRequest(r.carId(),
+                        parseDate(r.dateFrom(), "items[" + i + "].date_from"),
+                        parseDate(r.dateTo(), "items[" + i + "].date_to")));
+            }
+
+            List<BatchItemResult> results = resUC.createBatch(clientId, items, atomic);
+            List<BatchItemResponse> out = new ArrayList<>(results.size());
+            boolean allCreated = true;
+            for (BatchItemResult r : results) {
+                allCreated &= r.reservation() != null;
+                out.add(new BatchItemResponse(r.index(), batchStatus(r), r.reservation(), r.message()));
+            }
+
+            HttpStatus st = !atomic ? HttpStatus.OK : allCreated ? HttpStatus.CREATED : HttpStatus.CONFLICT;
+            ctx.status(st).json(Map.of("items", out));
         });
 
         app.get("/api/v1/reservations/me", ctx -> {
             long clientId = requireClientId(ctx);
-            ctx.json(resUC.listMine(clientId));
+            String limitStr = ctx.queryParam("limit");
+            String cursorStr = ctx.queryParam("cursor");
+
+            if (limitStr != null || cursorStr != null) {
+                int limit = parseLimit(limitStr);
+                ReservationPage page = resUC.listMinePage(clientId, decodeCursor(cursorStr), limit);
+                String next = page.next() == null ? null : encodeCursor(page.next());
+                writeJson(ctx, reservationPageWriter, new ReservationPageResponse(page.items(), next));
+                return;
+            }
+
+            if ("true".equals(ctx.queryParam("stream"))) {
+                ctx.contentType(JSON_CONTENT_TYPE);
+                try (JsonGenerator gen = reservationWriter.createGenerator(ctx.outputStream())) {
+                    gen.writeStartArray();
+                    resUC.streamMine(clientId, row -> {
+                        try {
+                            reservationWriter.writeValue(gen, row);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    gen.writeEndArray();
+                }
+                return;
+            }
+
+            writeJson(ctx, reservationListWriter, resUC.listMine(clientId));
         });
 
         app.get("/api/v1/reservations/{id}", ctx -> {
@@ -151,12 +353,64 @@ public final class ApiRoutes {
         return app;
     }
 
+    /**
+     * Encodes with a writer whose root type is resolved up front, straight to UTF-8 bytes in
+     * Jackson's recycled buffers. A single write also lets the compressor see the full length
+     * before deciding whether the body is worth compressing.
+     */
+    private static void writeJson(Context ctx, ObjectWriter writer, Object value) {
+        ctx.contentType(JSON_CONTENT_TYPE).result(encode(writer, value));
+    }
+
+    private static byte[] encode(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CompressionStrategy compression(AppConfig.Compression c) {
+        if (AppConfig.COMPRESSION_NONE.equals(c.algorithm())) return CompressionStrategy.NONE;
+
+        CompressionStrategy strategy;
+        if (AppConfig.COMPRESSION_BROTLI.equals(c.algorithm())) {
+            if (CompressionStrategy.Companion.brotli4jPresent()) {
+                // Clients that do not accept br still get gzip.
+                strategy = new CompressionStrategy(new Brotli(c.level()), new Gzip());
+            } else {
+                log.warn("HTTP_COMPRESSION=brotli but brotli4j is not on the classpath, using gzip");
+                strategy = new CompressionStrategy(null, new Gzip());
+            }
+        } else {
+            strategy = new CompressionStrategy(null, new Gzip(c.level()));
+        }
+        strategy.setDefaultMinSizeForCompression(c.minSizeBytes());
+        return strategy;
+    }
+
     private static long requireClientId(Context ctx) {
         Long id = ctx.attribute(AuthMiddleware.ATTR_CLIENT_ID);
         if (id == null || id <= 0) throw new DomainException(ErrorCode.UNAUTHORIZED, "unauthorized");
         return id;
     }
 
+    /** {@code null} if the header is absent; otherwise 1 to 255 visible ASCII characters. */
+    private static String idempotencyKey(Context ctx) {
+        String key = ctx.header(IDEMPOTENCY_KEY);
+        if (key == null) return null;
+        boolean valid = !key.isEmpty() && key.length() <= MAX_IDEMPOTENCY_KEY_LENGTH;
+        for (int i = 0; valid && i < key.length(); i++) {
+            char ch = key.charAt(i);
+            valid = ch > 0x20 && ch < 0x7f;
+        }
+        if (!valid) {
+            throw new DomainException(ErrorCode.VALIDATION,
+                    IDEMPOTENCY_KEY + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " visible ASCII characters");
+        }
+        return key;
+    }
+
     private static long parseId(String s) {
         try {
             long id = Long.parseLong(s);
@@ -167,7 +421,94 @@ public final class ApiRoutes {
         }
     }
 
-    private static LocalDate parseDate(String s, String fieldName) {
+    /**
+     * Sets {@code ETag} and {@code Cache-Control}, and answers 304 when {@code If-None-Match}
+     * already names this version (weak comparison).
+     */
+    private static boolean notModified(Context ctx, String etag, String cacheControl) {
+        ctx.header(Header.ETAG, etag);
+        ctx.header(Header.CACHE_CONTROL, cacheControl);
+        String ifNoneMatch = ctx.header(Header.IF_NONE_MATCH);
+        if (ifNoneMatch == null) return false;
+
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || stripWeak(c).equals(opaque)) {
+                ctx.status(HttpStatus.NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The runs are a handful of small numbers, so the tag carries them verbatim: two different
+     * calendars of the same range can never share a tag, unlike a hash of the runs.
+     */
+    private static String calendarTag(CarCalendar cal) {
+        StringBuilder sb = new StringBuilder("W/\"k").append(cal.from().toEpochDay())
+                .append('-').append(cal.to().toEpochDay());
+        for (int run : cal.runs()) sb.append('.').append(run);
+        return sb.append('"').toString();
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static String httpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+
+    private static Handler rateLimit(MetricsRegistry metrics, String routeClass, double rps, int burst, int stripes) {
+        if (rps <= 0) return null;
+        return new RateLimitHandler(new RateLimiter(rps, burst, stripes),
+                metrics.counter("rate_limited_total", "Requests rejected by the rate limiter", "route_class", routeClass));
+    }
+
+    private static String batchStatus(BatchItemResult r) {
+        if (r.reservation() != null) return r.reservation().status();
+        if (r.error() == null) return "rolled_back";
+        return switch (r.error()) {
+            case CONFLICT -> "conflict";
+            case NOT_FOUND -> "car_not_found";
+            case VALIDATION -> "invalid";
+            default -> "failed";
+        };
+    }
+
+    private static int parseLimit(String s) {
+        if (s == null || s.isBlank()) return DEFAULT_PAGE_LIMIT;
+        try {
+            int limit = Integer.parseInt(s);
+            if (limit <= 0 || limit > MAX_PAGE_LIMIT) throw new NumberFormatException();
+            return limit;
+        } catch (NumberFormatException e) {
+            throw new DomainException(ErrorCode.VALIDATION, "limit must be between 1 and " + MAX_PAGE_LIMIT);
+        }
+    }
+
+    static String encodeCursor(ReservationCursor c) {
+        byte[] raw = (c.dateFrom() + ":" + c.rentalId()).getBytes(StandardCharsets.US_ASCII);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    static ReservationCursor decodeCursor(String s) {
+        if (s == null || s.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(s), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            LocalDate dateFrom = LocalDate.parse(raw.substring(0, sep));
+            long rentalId = Long.parseLong(raw.substring(sep + 1));
+            return new ReservationCursor(dateFrom, rentalId);
+        } catch (RuntimeException e) {
+            throw new DomainException(ErrorCode.VALIDATION, "invalid cursor");
+        }
+    }
+
+    static LocalDate parseDate(String s, String fieldName) {
         if (s == null || s.isBlank()) {
             throw new DomainException(ErrorCode.VALIDATION, fieldName + " must be YYYY-MM-DD");
         }
@@ -18,7 +18,11 @@ public final class AuthMiddleware implements Handler {
 
     @Override
     public void handle(Context ctx) {
-        String header = ctx.header(AUTH_HEADER);
+        String token = extractToken(ctx.header(AUTH_HEADER));
+        ctx.attribute(ATTR_CLIENT_ID, jwt.verifyAndGetClientId(token));
+    }
+
+    static String extractToken(String header) {
         if (header == null || header.isBlank()) {
             throw new DomainException(ErrorCode.UNAUTHORIZED, "missing Authorization header");
         }
@@ -30,6 +34,6 @@ public final class AuthMiddleware implements Handler {
         if (token.isEmpty()) {
             throw new DomainException(ErrorCode.UNAUTHORIZED, "missing token");
         }
-        ctx.attribute(ATTR_CLIENT_ID, jwt.verifyAndGetClientId(token));
+        return token;
     }
 }
@@ -0,0 +1,66 @@
+package carrental.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Sends read-only requests to the just-started server over loopback before it reports ready,
+ * so Jetty, routing, JSON encoding, compression and the service read paths have been loaded
+ * and run a few times when real traffic arrives. Nothing is written: the reservation route is
+ * called without a token and stops at the 401.
+ *
+ * <p>The requests carry {@link Readiness#WARMUP_HEADER}, so they neither use up the
+ * 127.0.0.1 rate-limit buckets nor show up in the {@code http_*} request metrics.
+ */
+public final class HandlerWarmup {
+    private static final Logger log = LoggerFactory.getLogger(HandlerWarmup.class);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private HandlerWarmup() {}
+
+    /** Returns the number of requests that got any HTTP response. */
+    public static int run(int port, int requests, long carId) {
+        if (requests <= 0) return 0;
+        LocalDate from = LocalDate.now().plusDays(1);
+        String base = "http://127.0.0.1:" + port;
+        List<String> paths = List.of(
+                "/api/v1/cars",
+                "/api/v1/cars?date_from=" + from + "&date_to=" + from.plusDays(3),
+                "/api/v1/cars/" + carId,
+                "/api/v1/cars/" + carId + "/calendar",
+                "/api/v1/reservations/me",
+                "/health");
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+        int answered = 0;
+        for (int i = 0; i < requests; i++) {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + paths.get(i % paths.size())))
+                    .header("Accept-Encoding", "gzip")
+                    .header(Readiness.WARMUP_HEADER, "1")
+                    .timeout(TIMEOUT)
+                    .GET()
+                    .build();
+            try {
+                client.send(req, HttpResponse.BodyHandlers.discarding());
+                answered++;
+            } catch (IOException e) {
+                log.warn("warm-up request {} failed: {}", req.uri(), e.toString());
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return answered;
+    }
+}
@@ -4,25 +4,81 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
+import carrental.cache.BoundedCache;
 import carrental.domain.error.DomainException;
 import carrental.domain.error.ErrorCode;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+/**
+ * Verifies HS256 tokens and remembers the client id of every token that passed
+ * verification until its {@code exp}. Entries are keyed by the SHA-256 of the
+ * complete token, signature included, so only a byte-identical copy of an
+ * already verified token can hit the cache.
+ */
 public final class JwtService {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     private final JWTVerifier verifier;
+    private final BoundedCache<TokenKey, Long> verified;
 
     public JwtService(String secret) {
+        this(secret, DEFAULT_CACHE_SIZE);
+    }
+
+    public JwtService(String secret, int cacheSize) {
         Algorithm alg = Algorithm.HMAC256(secret);
         this.verifier = JWT.require(alg).build();
+        this.verified = new BoundedCache<>(Math.max(1, cacheSize), 0);
     }
 
     public long verifyAndGetClientId(String token) {
+        TokenKey key = TokenKey.of(token);
+        Long cached = verified.get(key);
+        if (cached != null) return cached;
+
         try {
             DecodedJWT jwt = verifier.verify(token);
             long id = Long.parseLong(jwt.getSubject());
             if (id <= 0) throw new NumberFormatException();
+
+            Instant exp = jwt.getExpiresAtAsInstant();
+            if (exp != null) verified.put(key, id, exp.toEpochMilli());
             return id;
         } catch (Exception e) {
             throw new DomainException(ErrorCode.UNAUTHORIZED, "invalid token");
         }
     }
+
+    public long cacheHits() {
+        return verified.hits();
+    }
+
+    public long cacheMisses() {
+        return verified.misses();
+    }
+
+    public int cacheSize() {
+        return verified.size();
+    }
+
+    private record TokenKey(long a, long b, long c, long d) {
+        static TokenKey of(String token) {
+            MessageDigest md = SHA256.get();
+            ByteBuffer h = ByteBuffer.wrap(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenKey(h.getLong(), h.getLong(), h.getLong(), h.getLong());
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package carrental.api;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
+import carrental.metrics.Counter;
+
+/**
+ * Before-handler applying one {@link RateLimiter} to a class of routes. Requests are keyed by
+ * the authenticated client id when an earlier handler has set it, otherwise by {@code ctx.ip()},
+ * which is the forwarded client address only when {@link TrustedProxies} are configured.
+ */
+final class RateLimitHandler implements Handler {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final RateLimiter limiter;
+    private final String limit;
+    private final Counter rejected;
+
+    RateLimitHandler(RateLimiter limiter, Counter rejected) {
+        this.limiter = limiter;
+        this.limit = String.valueOf(limiter.burst());
+        this.rejected = rejected;
+    }
+
+    @Override
+    public void handle(Context ctx) {
+        if (Readiness.isWarmup(ctx)) return;
+        Long clientId = ctx.attribute(AuthMiddleware.ATTR_CLIENT_ID);
+        long key = clientId != null ? clientId : ctx.ip().hashCode();
+
+        long r = limiter.tryAcquire(key);
+        ctx.header("X-RateLimit-Limit", limit);
+        if (r >= 0) {
+            ctx.header("X-RateLimit-Remaining", String.valueOf(r));
+            return;
+        }
+
+        rejected.inc();
+        long retryAfter = Math.max(1, (-r + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        ctx.header("X-RateLimit-Remaining", "0");
+        ctx.header("Retry-After", String.valueOf(retryAfter));
+        throw new DomainException(ErrorCode.RATE_LIMITED, "too many requests");
+    }
+}
@@ -0,0 +1,66 @@
+package carrental.api;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free token bucket in its GCRA form: every stripe holds a single "theoretical arrival
+ * time" updated with CAS, so a check allocates nothing. Keys are hashed onto a fixed number of
+ * stripes, which bounds memory no matter how many clients or addresses show up; keys that
+ * collide share one bucket.
+ */
+public final class RateLimiter {
+    private final AtomicLongArray stripes;
+    private final int mask;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int burst;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param ratePerSecond sustained rate per key
+     * @param burst         requests a key may send at once after being idle
+     * @param stripes       number of buckets, rounded up to a power of two
+     */
+    public RateLimiter(double ratePerSecond, int burst, int stripes) {
+        if (ratePerSecond <= 0 || burst <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("rate, burst and stripes must be positive");
+        }
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new AtomicLongArray(n);
+        this.mask = n - 1;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.burst = burst;
+    }
+
+    /**
+     * Takes one token for {@code key}. Returns the tokens left ({@code >= 0}) on success,
+     * or minus the nanoseconds until the next token on rejection.
+     */
+    public long tryAcquire(long key) {
+        int i = stripe(key);
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long tat = stripes.get(i);
+            long start = Math.max(tat, now);
+            long ahead = start - now;
+            if (ahead > toleranceNanos) {
+                return -(ahead - toleranceNanos);
+            }
+            long next = start + intervalNanos;
+            if (stripes.compareAndSet(i, tat, next)) {
+                return (toleranceNanos - ahead) / intervalNanos;
+            }
+        }
+    }
+
+    public int burst() {
+        return burst;
+    }
+
+    private int stripe(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) h & mask;
+    }
+}
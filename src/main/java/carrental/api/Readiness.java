@@ -0,0 +1,107 @@
+package carrental.api;
+
+import io.javalin.http.Context;
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lifecycle state behind {@code GET /ready} plus a count of requests being handled, so a
+ * shutdown can wait for them. The instance starts as {@code starting}, turns {@code ready}
+ * once warm-up is done, and on shutdown goes {@code draining} (still serving, but reporting
+ * not-ready so the load balancer stops sending traffic) and then {@code closed}, where new
+ * requests get 503 while the ones already running finish. {@code suspended} covers a process
+ * checkpoint, between closing its sockets and reopening them after restore.
+ *
+ * <p>While starting, a loopback request carrying {@link #WARMUP_HEADER} is marked as warm-up
+ * traffic, which the rate limits and request metrics leave out.
+ */
+public final class Readiness {
+    public enum State { STARTING, READY, SUSPENDED, DRAINING, CLOSED }
+
+    static final String WARMUP_HEADER = "X-Warmup";
+
+    private static final String ATTR_COUNTED = "readiness_counted";
+    private static final String ATTR_WARMUP = "readiness_warmup";
+    private static final long POLL_MS = 10;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile State state = State.STARTING;
+
+    public State state() {
+        return state;
+    }
+
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    public void markReady() {
+        if (state == State.STARTING) state = State.READY;
+    }
+
+    public void suspend() {
+        if (state == State.READY) state = State.SUSPENDED;
+    }
+
+    public void resume() {
+        if (state == State.SUSPENDED) state = State.READY;
+    }
+
+    public void markDraining() {
+        if (state != State.CLOSED) state = State.DRAINING;
+    }
+
+    public void close() {
+        state = State.CLOSED;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Waits until no request is being handled or {@code timeoutMs} passes; returns whether the
+     * server went idle.
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (inFlight.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) return false;
+            Thread.sleep(POLL_MS);
+        }
+        return true;
+    }
+
+    void enter(Context ctx) {
+        if (state == State.CLOSED) throw new DomainException(ErrorCode.UNAVAILABLE, "server is shutting down");
+        inFlight.incrementAndGet();
+        ctx.attribute(ATTR_COUNTED, Boolean.TRUE);
+        if (state == State.STARTING && ctx.header(WARMUP_HEADER) != null && isLoopback(ctx.req().getRemoteAddr())) {
+            ctx.attribute(ATTR_WARMUP, Boolean.TRUE);
+        }
+    }
+
+    static boolean isWarmup(Context ctx) {
+        return ctx.attribute(ATTR_WARMUP) != null;
+    }
+
+    /** The socket peer, not {@code ctx.ip()}: a forwarded-for header must not pass as loopback. */
+    private static boolean isLoopback(String remoteAddr) {
+        try {
+            return remoteAddr != null && InetAddress.getByName(remoteAddr).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    void exit(Context ctx) {
+        if (ctx.attribute(ATTR_COUNTED) != null) {
+            ctx.attribute(ATTR_COUNTED, null);
+            inFlight.decrementAndGet();
+        }
+    }
+}
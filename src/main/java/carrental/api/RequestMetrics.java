@@ -0,0 +1,87 @@
+package carrental.api;
+
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import carrental.domain.error.ErrorCode;
+import carrental.metrics.Counter;
+import carrental.metrics.Histogram;
+import carrental.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-route latency and response counters plus per-{@link ErrorCode} error counters.
+ * Routes are labelled by their path template, so the number of series is bounded by the
+ * number of registered handlers: requests rejected by a before-handler (401, 429, 503) carry
+ * that handler's pattern, noted by {@link #rejected} since after-handlers run before
+ * {@link #record}, and requests that matched nothing share {@code route="unmatched"}.
+ */
+final class RequestMetrics {
+    private static final String UNMATCHED = "unmatched";
+    private static final String REJECTED_BY = "carrental.metrics.rejectedBy";
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MetricsRegistry metrics;
+    private final Map<HandlerType, Map<String, Route>> routes = new EnumMap<>(HandlerType.class);
+    private final Map<ErrorCode, Counter> errors = new EnumMap<>(ErrorCode.class);
+    private final Counter unhandled;
+
+    RequestMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        for (HandlerType t : HandlerType.values()) {
+            routes.put(t, new ConcurrentHashMap<>());
+        }
+        for (ErrorCode code : ErrorCode.values()) {
+            errors.put(code, metrics.counter("api_errors_total", "Domain errors returned to clients", "code", code.name()));
+        }
+        this.unhandled = metrics.counter("api_unhandled_exceptions_total", "Requests that failed with an unexpected exception");
+    }
+
+    void record(Context ctx, float executionTimeMs) {
+        if (Readiness.isWarmup(ctx)) return;
+        String path = ctx.attribute(REJECTED_BY);
+        if (path == null) {
+            path = ctx.handlerType() == HandlerType.BEFORE ? ctx.matchedPath() : ctx.endpointHandlerPath();
+            // With nothing matched Javalin reports a placeholder sentence rather than a pattern.
+            if (!path.startsWith("/")) path = UNMATCHED;
+        }
+
+        Map<String, Route> byPath = routes.get(ctx.method());
+        Route r = byPath.get(path);
+        if (r == null) r = byPath.computeIfAbsent(path, p -> new Route(metrics, ctx.method().name(), p));
+
+        r.latency.record((long) (executionTimeMs * 1_000_000.0));
+        int cls = ctx.statusCode() / 100 - 1;
+        if (cls >= 0 && cls < STATUS_CLASSES.length) r.responses[cls].inc();
+    }
+
+    /** Called from the exception handlers: remembers the pattern of a before-handler that threw. */
+    void rejected(Context ctx) {
+        if (ctx.handlerType() == HandlerType.BEFORE) ctx.attribute(REJECTED_BY, ctx.matchedPath());
+    }
+
+    void error(Context ctx, ErrorCode code) {
+        if (Readiness.isWarmup(ctx)) return;
+        errors.get(code).inc();
+    }
+
+    void unhandled() {
+        unhandled.inc();
+    }
+
+    private static final class Route {
+        final Histogram latency;
+        final Counter[] responses = new Counter[STATUS_CLASSES.length];
+
+        Route(MetricsRegistry metrics, String method, String path) {
+            this.latency = metrics.histogram("http_request_duration_seconds", "Request handling time",
+                    "method", method, "route", path);
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                responses[i] = metrics.counter("http_responses_total", "Responses by status class",
+                        "method", method, "route", path, "status", STATUS_CLASSES[i]);
+            }
+        }
+    }
+}
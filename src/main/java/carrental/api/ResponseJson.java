@@ -0,0 +1,132 @@
+package carrental.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import carrental.domain.model.Car;
+import carrental.domain.model.ReservationView;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Hand-written serializers for {@link Car} and {@link ReservationView}, the records that make
+ * up the large list responses. Field names are pre-encoded and values go straight to the
+ * generator, skipping the reflective bean path. The output is byte-for-byte what Javalin's
+ * default mapper produces: camelCase names, nulls included, dates as {@code [y,m,d]} and
+ * {@code BigDecimal} through the generator's own number handling.
+ */
+final class ResponseJson {
+    private ResponseJson() {}
+
+    static SimpleModule module() {
+        SimpleModule m = new SimpleModule("carrental-response-json");
+        m.addSerializer(Car.class, new CarSerializer());
+        m.addSerializer(ReservationView.class, new ReservationViewSerializer());
+        return m;
+    }
+
+    private static final SerializedString CAR_ID = new SerializedString("carId");
+    private static final SerializedString PLATE_NUMBER = new SerializedString("plateNumber");
+    private static final SerializedString BRAND = new SerializedString("brand");
+    private static final SerializedString MODEL = new SerializedString("model");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString DAILY_COST = new SerializedString("dailyCost");
+    private static final SerializedString INSURANCE_COST = new SerializedString("insuranceCost");
+    private static final SerializedString PROD_YEAR = new SerializedString("prodYear");
+
+    private static final SerializedString RENTAL_ID = new SerializedString("rentalId");
+    private static final SerializedString CLIENT_ID = new SerializedString("clientId");
+    private static final SerializedString FULL_NAME = new SerializedString("fullName");
+    private static final SerializedString DATE_FROM = new SerializedString("dateFrom");
+    private static final SerializedString DATE_TO = new SerializedString("dateTo");
+    private static final SerializedString DAILY_RATE_AT_BOOKING = new SerializedString("dailyRateAtBooking");
+    private static final SerializedString TOTAL_AMOUNT = new SerializedString("totalAmount");
+    private static final SerializedString PENALTY_AMOUNT = new SerializedString("penaltyAmount");
+    private static final SerializedString DEPOSIT_AMOUNT = new SerializedString("depositAmount");
+
+    static final class CarSerializer extends StdSerializer<Car> {
+        private static final long serialVersionUID = 1L;
+
+        CarSerializer() {
+            super(Car.class);
+        }
+
+        @Override
+        public void serialize(Car c, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(c);
+            gen.writeFieldName(CAR_ID);
+            gen.writeNumber(c.carId());
+            string(gen, PLATE_NUMBER, c.plateNumber());
+            string(gen, BRAND, c.brand());
+            string(gen, MODEL, c.model());
+            string(gen, STATUS, c.status());
+            decimal(gen, DAILY_COST, c.dailyCost());
+            decimal(gen, INSURANCE_COST, c.insuranceCost());
+            gen.writeFieldName(PROD_YEAR);
+            if (c.prodYear() == null) gen.writeNull();
+            else gen.writeNumber(c.prodYear());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class ReservationViewSerializer extends StdSerializer<ReservationView> {
+        private static final long serialVersionUID = 1L;
+
+        ReservationViewSerializer() {
+            super(ReservationView.class);
+        }
+
+        @Override
+        public void serialize(ReservationView r, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(r);
+            gen.writeFieldName(RENTAL_ID);
+            gen.writeNumber(r.rentalId());
+            gen.writeFieldName(CLIENT_ID);
+            gen.writeNumber(r.clientId());
+            string(gen, FULL_NAME, r.fullName());
+            gen.writeFieldName(CAR_ID);
+            gen.writeNumber(r.carId());
+            string(gen, PLATE_NUMBER, r.plateNumber());
+            string(gen, BRAND, r.brand());
+            string(gen, MODEL, r.model());
+            date(gen, DATE_FROM, r.dateFrom());
+            date(gen, DATE_TO, r.dateTo());
+            string(gen, STATUS, r.status());
+            decimal(gen, DAILY_RATE_AT_BOOKING, r.dailyRateAtBooking());
+            decimal(gen, TOTAL_AMOUNT, r.totalAmount());
+            decimal(gen, PENALTY_AMOUNT, r.penaltyAmount());
+            decimal(gen, DEPOSIT_AMOUNT, r.depositAmount());
+            gen.writeEndObject();
+        }
+    }
+
+    private static void string(JsonGenerator gen, SerializableString name, String value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) gen.writeNull();
+        else gen.writeString(value);
+    }
+
+    private static void decimal(JsonGenerator gen, SerializableString name, BigDecimal value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) gen.writeNull();
+        else gen.writeNumber(value);
+    }
+
+    private static void date(JsonGenerator gen, SerializableString name, LocalDate value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray();
+        gen.writeNumber(value.getYear());
+        gen.writeNumber(value.getMonthValue());
+        gen.writeNumber(value.getDayOfMonth());
+        gen.writeEndArray();
+    }
+}
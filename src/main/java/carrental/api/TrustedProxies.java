@@ -0,0 +1,90 @@
+package carrental.api;
+
+import io.javalin.http.Context;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves {@code ctx.ip()} behind reverse proxies. When the socket peer is one of the
+ * configured proxies, {@code X-Forwarded-For} is read right to left and the first address that
+ * is not a trusted proxy is the client. Any other peer is the client itself, so a client that
+ * reaches the server directly cannot choose its own rate-limit key with a forged header.
+ */
+final class TrustedProxies {
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+    private static final Pattern IPV4 = Pattern.compile("((25[0-5]|2[0-4]\\d|1?\\d?\\d)\\.){3}(25[0-5]|2[0-4]\\d|1?\\d?\\d)");
+    private static final Pattern IPV6 = Pattern.compile("[0-9a-fA-F.]*:[0-9a-fA-F:.]*");
+
+    private final byte[][] networks;
+    private final int[] prefixes;
+
+    /** Each entry is an address or a CIDR range, e.g. {@code 10.0.0.0/8}. */
+    TrustedProxies(List<String> cidrs) {
+        networks = new byte[cidrs.size()][];
+        prefixes = new int[cidrs.size()];
+        for (int i = 0; i < networks.length; i++) {
+            String entry = cidrs.get(i);
+            int slash = entry.indexOf('/');
+            byte[] addr = literal(slash < 0 ? entry : entry.substring(0, slash));
+            if (addr == null) throw new IllegalArgumentException("not an IP address or CIDR range: " + entry);
+            int prefix = slash < 0 ? addr.length * 8 : Integer.parseInt(entry.substring(slash + 1));
+            if (prefix < 0 || prefix > addr.length * 8) {
+                throw new IllegalArgumentException("bad prefix length in " + entry);
+            }
+            networks[i] = addr;
+            prefixes[i] = prefix;
+        }
+    }
+
+    String clientIp(Context ctx) {
+        String peer = ctx.req().getRemoteAddr();
+        if (!trusted(peer)) return peer;
+        String forwarded = ctx.header(FORWARDED_FOR);
+        if (forwarded == null) return peer;
+
+        String client = peer;
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) continue;
+            client = hop;
+            if (!trusted(hop)) break;
+        }
+        return client;
+    }
+
+    private boolean trusted(String address) {
+        byte[] addr = literal(address);
+        if (addr == null) return false;
+        for (int i = 0; i < networks.length; i++) {
+            if (networks[i].length == addr.length && matches(networks[i], addr, prefixes[i])) return true;
+        }
+        return false;
+    }
+
+    private static boolean matches(byte[] network, byte[] addr, int prefix) {
+        int full = prefix / 8;
+        for (int b = 0; b < full; b++) {
+            if (network[b] != addr[b]) return false;
+        }
+        int rest = prefix % 8;
+        if (rest == 0) return true;
+        int mask = 0xFF << (8 - rest);
+        return (network[full] & mask) == (addr[full] & mask);
+    }
+
+    /** Parses IP literals only; anything else is {@code null}, so a header value never triggers a DNS lookup. */
+    private static byte[] literal(String s) {
+        if (s == null) return null;
+        if (s.startsWith("[") && s.endsWith("]")) s = s.substring(1, s.length() - 1);
+        if (!IPV4.matcher(s).matches() && !IPV6.matcher(s).matches()) return null;
+        try {
+            return InetAddress.getByName(s).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package carrental.api.dto;
+
+import carrental.domain.model.ReservationView;
+
+public record BatchItemResponse(
+        int index,
+        String status,
+        ReservationView reservation,
+        String error
+) {}
@@ -0,0 +1,10 @@
+package carrental.api.dto;
+
+import carrental.domain.model.ReservationView;
+
+import java.util.List;
+
+public record ReservationPageResponse(
+        List<ReservationView> items,
+        String nextCursor
+) {}
@@ -0,0 +1,156 @@
+package carrental.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded LRU cache with an optional time-to-live and per-entry expiry.
+ * Keys are spread over independently locked segments, each evicting its own
+ * least recently used entry once it is full.
+ */
+public final class BoundedCache<K, V> {
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlMillis;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize   upper bound on the number of entries
+     * @param ttlMillis default time-to-live of an entry, {@code 0} for none
+     */
+    public BoundedCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        this.segments = newSegments(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    public V get(K key) {
+        Segment<K, V> seg = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (seg) {
+            Entry<V> e = seg.get(key);
+            if (e != null && e.expiresAt > now) {
+                hits.increment();
+                return e.value;
+            }
+            if (e != null) seg.remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V v = get(key);
+        if (v != null) return v;
+        v = loader.apply(key);
+        if (v != null) put(key, v);
+        return v;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE);
+    }
+
+    public void put(K key, V value, long expiresAtMillis) {
+        if (ttlMillis > 0) {
+            expiresAtMillis = Math.min(expiresAtMillis, System.currentTimeMillis() + ttlMillis);
+        }
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            seg.put(key, new Entry<>(value, expiresAtMillis));
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+    }
+
+    /** Drops every expired entry and returns how many were removed. */
+    public int removeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) {
+                var it = seg.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().expiresAt <= now) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int n = 0;
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) {
+                n += seg.size();
+            }
+        }
+        return n;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Segment<K, V>[] newSegments(int n) {
+        return new Segment[n];
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+        private final LongAdder evictions;
+
+        Segment(int maxSize, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package carrental.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Loads each key at most once at a time: callers that ask for a key while it is being loaded
+ * wait for that load and share its result (or its exception). The result is then kept for a
+ * short time-to-live. Every call names the data version it needs; a kept result or a running
+ * load of another version is not used, so bumping the version invalidates everything at once.
+ */
+public final class SingleFlightCache<K, V> {
+    private final BoundedCache<K, Loaded<V>> recent;
+    private final ConcurrentHashMap<K, Loaded<CompletableFuture<V>>> running = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * @param maxSize   upper bound on the number of kept results
+     * @param ttlMillis how long a result is kept, {@code 0} to only share running loads
+     */
+    public SingleFlightCache(int maxSize, long ttlMillis) {
+        this.recent = ttlMillis > 0 ? new BoundedCache<>(maxSize, ttlMillis) : null;
+    }
+
+    public V get(K key, long version, Supplier<? extends V> loader) {
+        if (recent != null) {
+            Loaded<V> r = recent.get(key);
+            if (r != null && r.version == version) {
+                hits.increment();
+                return r.value;
+            }
+        }
+
+        Loaded<CompletableFuture<V>> mine = new Loaded<>(version, new CompletableFuture<>());
+        Loaded<CompletableFuture<V>> other = running.putIfAbsent(key, mine);
+        if (other != null && other.version == version) {
+            coalesced.increment();
+            try {
+                return other.value.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        // A load of an older version may still be running; this one goes ahead on its own.
+        loads.increment();
+        try {
+            V v = loader.get();
+            mine.value.complete(v);
+            if (recent != null && v != null) recent.put(key, new Loaded<>(version, v));
+            return v;
+        } catch (RuntimeException e) {
+            mine.value.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (other == null) running.remove(key, mine);
+        }
+    }
+
+    public void invalidateAll() {
+        if (recent != null) recent.invalidateAll();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public long loads() {
+        return loads.sum();
+    }
+
+    private record Loaded<T>(long version, T value) {
+    }
+}
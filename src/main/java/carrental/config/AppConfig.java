@@ -2,33 +2,179 @@ package carrental.config;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public record AppConfig(
         String httpAddr,
         int httpPort,
+        boolean virtualThreads,
+        Compression compression,
         String jwtSecret,
+        int jwtCacheSize,
+        int bcryptCost,
+        int bcryptThreads,
+        int bcryptQueue,
         String jdbcUrl,
         String dbUser,
-        String dbPassword
+        String dbPassword,
+        DbPool dbPool,
+        Replica replica,
+        Shards shards,
+        long availabilityResyncSeconds,
+        int carCacheSize,
+        long carCacheTtlSeconds,
+        int carSearchCacheSize,
+        long carSearchCacheMs,
+        String recoveryStore,
+        int recoveryMaxTokens,
+        long recoveryCleanupSeconds,
+        RateLimits rateLimits,
+        int admissionMaxConcurrent,
+        long admissionWaitMs,
+        EventLog eventLog,
+        Idempotency idempotency,
+        Startup startup
 ) {
+    public static final String RECOVERY_STORE_POSTGRES = "postgres";
+    public static final String RECOVERY_STORE_MEMORY = "memory";
+    public static final String COMPRESSION_GZIP = "gzip";
+    public static final String COMPRESSION_BROTLI = "brotli";
+    public static final String COMPRESSION_NONE = "none";
+    public static final String FLYWAY_MIGRATE = "migrate";
+    public static final String FLYWAY_VALIDATE = "validate";
+    public static final String FLYWAY_SKIP = "skip";
+
     private static final String ENV_HTTP_ADDR = "HTTP_ADDR";
+    private static final String ENV_HTTP_VIRTUAL_THREADS = "HTTP_VIRTUAL_THREADS";
+    private static final String ENV_HTTP_COMPRESSION = "HTTP_COMPRESSION";
+    private static final String ENV_HTTP_COMPRESSION_LEVEL = "HTTP_COMPRESSION_LEVEL";
+    private static final String ENV_HTTP_COMPRESSION_MIN_SIZE = "HTTP_COMPRESSION_MIN_SIZE";
     private static final String ENV_JWT_SECRET = "JWT_SECRET";
+    private static final String ENV_JWT_CACHE_SIZE = "JWT_CACHE_SIZE";
+
+    private static final String ENV_BCRYPT_COST = "BCRYPT_COST";
+    private static final String ENV_BCRYPT_THREADS = "BCRYPT_THREADS";
+    private static final String ENV_BCRYPT_QUEUE = "BCRYPT_QUEUE";
 
     private static final String ENV_DATABASE_URL = "DATABASE_URL";
     private static final String ENV_JDBC_URL = "JDBC_URL";
     private static final String ENV_DB_USER = "DB_USER";
     private static final String ENV_DB_PASSWORD = "DB_PASSWORD";
+    private static final String ENV_DB_POOL_SIZE = "DB_POOL_SIZE";
+    private static final String ENV_DB_POOL_MIN_IDLE = "DB_POOL_MIN_IDLE";
+    private static final String ENV_DB_CONNECTION_TIMEOUT_MS = "DB_CONNECTION_TIMEOUT_MS";
+    private static final String ENV_DB_IDLE_TIMEOUT_MS = "DB_IDLE_TIMEOUT_MS";
+    private static final String ENV_DB_MAX_LIFETIME_MS = "DB_MAX_LIFETIME_MS";
+    private static final String ENV_DB_LEAK_DETECTION_MS = "DB_LEAK_DETECTION_MS";
+    private static final String ENV_DB_PREPARE_THRESHOLD = "DB_PREPARE_THRESHOLD";
+    private static final String ENV_DB_STATEMENT_CACHE_QUERIES = "DB_STATEMENT_CACHE_QUERIES";
+    private static final String ENV_DB_STATEMENT_CACHE_SIZE_MIB = "DB_STATEMENT_CACHE_SIZE_MIB";
+
+    private static final String ENV_REPLICA_JDBC_URL = "REPLICA_JDBC_URL";
+    private static final String ENV_REPLICA_POOL_SIZE = "REPLICA_POOL_SIZE";
+    private static final String ENV_REPLICA_CONNECTION_TIMEOUT_MS = "REPLICA_CONNECTION_TIMEOUT_MS";
+    private static final String ENV_REPLICA_STICKY_MS = "REPLICA_STICKY_MS";
+    private static final String ENV_REPLICA_RETRY_MS = "REPLICA_RETRY_MS";
+    private static final String ENV_SHARD_JDBC_URLS = "SHARD_JDBC_URLS";
+    private static final String ENV_SHARD_POOL_SIZE = "SHARD_POOL_SIZE";
+
+    private static final String ENV_AVAILABILITY_RESYNC_SECONDS = "AVAILABILITY_RESYNC_SECONDS";
+    private static final String ENV_CAR_CACHE_SIZE = "CAR_CACHE_SIZE";
+    private static final String ENV_CAR_CACHE_TTL_SECONDS = "CAR_CACHE_TTL_SECONDS";
+    private static final String ENV_CAR_SEARCH_CACHE_SIZE = "CAR_SEARCH_CACHE_SIZE";
+    private static final String ENV_CAR_SEARCH_CACHE_MS = "CAR_SEARCH_CACHE_MS";
+
+    private static final String ENV_RATE_LIMIT_AUTH_RPS = "RATE_LIMIT_AUTH_RPS";
+    private static final String ENV_RATE_LIMIT_AUTH_BURST = "RATE_LIMIT_AUTH_BURST";
+    private static final String ENV_RATE_LIMIT_CARS_RPS = "RATE_LIMIT_CARS_RPS";
+    private static final String ENV_RATE_LIMIT_CARS_BURST = "RATE_LIMIT_CARS_BURST";
+    private static final String ENV_RATE_LIMIT_RESERVATIONS_RPS = "RATE_LIMIT_RESERVATIONS_RPS";
+    private static final String ENV_RATE_LIMIT_RESERVATIONS_BURST = "RATE_LIMIT_RESERVATIONS_BURST";
+    private static final String ENV_RATE_LIMIT_STRIPES = "RATE_LIMIT_STRIPES";
+    private static final String ENV_TRUSTED_PROXIES = "TRUSTED_PROXIES";
+    private static final String ENV_ADMISSION_MAX_CONCURRENT = "ADMISSION_MAX_CONCURRENT";
+    private static final String ENV_ADMISSION_WAIT_MS = "ADMISSION_WAIT_MS";
+
+    private static final String ENV_EVENT_LOG_QUEUE_SIZE = "EVENT_LOG_QUEUE_SIZE";
+    private static final String ENV_EVENT_LOG_BATCH_SIZE = "EVENT_LOG_BATCH_SIZE";
+    private static final String ENV_EVENT_LOG_SPILL_PATH = "EVENT_LOG_SPILL_PATH";
+
+    private static final String ENV_IDEMPOTENCY_CACHE_SIZE = "IDEMPOTENCY_CACHE_SIZE";
+    private static final String ENV_IDEMPOTENCY_TTL_SECONDS = "IDEMPOTENCY_TTL_SECONDS";
+    private static final String ENV_IDEMPOTENCY_PURGE_SECONDS = "IDEMPOTENCY_PURGE_SECONDS";
+
+    private static final String ENV_FLYWAY_MODE = "FLYWAY_MODE";
+    private static final String ENV_DB_PREWARM = "DB_PREWARM";
+    private static final String ENV_STARTUP_WARMUP_REQUESTS = "STARTUP_WARMUP_REQUESTS";
+    private static final String ENV_SHUTDOWN_DRAIN_DELAY_MS = "SHUTDOWN_DRAIN_DELAY_MS";
+    private static final String ENV_SHUTDOWN_TIMEOUT_MS = "SHUTDOWN_TIMEOUT_MS";
+    private static final String ENV_STARTUP_EXIT_WHEN_READY = "STARTUP_EXIT_WHEN_READY";
+
+    private static final String ENV_RECOVERY_STORE = "RECOVERY_STORE";
+    private static final String ENV_RECOVERY_MAX_TOKENS = "RECOVERY_MAX_TOKENS";
+    private static final String ENV_RECOVERY_CLEANUP_SECONDS = "RECOVERY_CLEANUP_SECONDS";
 
     private static final String DEFAULT_HTTP_ADDR = ":8080";
     private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final int DEFAULT_GZIP_LEVEL = 6;
+    private static final int DEFAULT_BROTLI_LEVEL = 4;
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
 
     private static final String DEFAULT_JWT_SECRET = "dev-secret";
+    private static final int DEFAULT_JWT_CACHE_SIZE = 10_000;
+
+    private static final int DEFAULT_BCRYPT_COST = 10;
+    private static final int DEFAULT_BCRYPT_QUEUE = 64;
 
     private static final String DEFAULT_DB_USER = "postgres";
     private static final String DEFAULT_DB_PASSWORD = "postgres";
     private static final String DEFAULT_DB_NAME = "car_house";
     private static final String DEFAULT_JDBC_URL = "jdbc:postgresql://localhost:5432/" + DEFAULT_DB_NAME;
+    private static final int DEFAULT_DB_POOL_SIZE = 10;
+    private static final long DEFAULT_DB_CONNECTION_TIMEOUT_MS = 30_000;
+    private static final long DEFAULT_DB_IDLE_TIMEOUT_MS = 600_000;
+    private static final long DEFAULT_DB_MAX_LIFETIME_MS = 1_800_000;
+    private static final long DEFAULT_DB_LEAK_DETECTION_MS = 0;
+    private static final int DEFAULT_DB_PREPARE_THRESHOLD = 1;
+    private static final int DEFAULT_DB_STATEMENT_CACHE_QUERIES = 256;
+    private static final int DEFAULT_DB_STATEMENT_CACHE_SIZE_MIB = 5;
+
+    private static final long DEFAULT_REPLICA_CONNECTION_TIMEOUT_MS = 500;
+    private static final long DEFAULT_REPLICA_STICKY_MS = 5_000;
+    private static final long DEFAULT_REPLICA_RETRY_MS = 5_000;
+
+    private static final long DEFAULT_AVAILABILITY_RESYNC_SECONDS = 30;
+    private static final int DEFAULT_CAR_CACHE_SIZE = 10_000;
+    private static final long DEFAULT_CAR_CACHE_TTL_SECONDS = 60;
+    private static final int DEFAULT_CAR_SEARCH_CACHE_SIZE = 1024;
+    private static final long DEFAULT_CAR_SEARCH_CACHE_MS = 1000;
+
+    private static final double DEFAULT_RATE_LIMIT_AUTH_RPS = 5;
+    private static final int DEFAULT_RATE_LIMIT_AUTH_BURST = 10;
+    private static final double DEFAULT_RATE_LIMIT_CARS_RPS = 50;
+    private static final int DEFAULT_RATE_LIMIT_CARS_BURST = 100;
+    private static final double DEFAULT_RATE_LIMIT_RESERVATIONS_RPS = 20;
+    private static final int DEFAULT_RATE_LIMIT_RESERVATIONS_BURST = 40;
+    private static final int DEFAULT_RATE_LIMIT_STRIPES = 65_536;
+    private static final int ADMISSION_PERMITS_PER_CONNECTION = 4;
+    private static final long DEFAULT_ADMISSION_WAIT_MS = 100;
+
+    private static final int DEFAULT_EVENT_LOG_QUEUE_SIZE = 65_536;
+    private static final int DEFAULT_EVENT_LOG_BATCH_SIZE = 500;
+    private static final String DEFAULT_EVENT_LOG_SPILL_PATH = "reservation-events.spill";
+
+    private static final int DEFAULT_IDEMPOTENCY_CACHE_SIZE = 10_000;
+    private static final long DEFAULT_IDEMPOTENCY_TTL_SECONDS = 86_400;
+    private static final long DEFAULT_IDEMPOTENCY_PURGE_SECONDS = 300;
+
+    private static final int DEFAULT_STARTUP_WARMUP_REQUESTS = 120;
+    private static final long DEFAULT_SHUTDOWN_DRAIN_DELAY_MS = 5_000;
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private static final int DEFAULT_RECOVERY_MAX_TOKENS = 100_000;
+    private static final long DEFAULT_RECOVERY_CLEANUP_SECONDS = 60;
 
     public static AppConfig fromEnv() {
         Map<String, String> env = System.getenv();
@@ -39,14 +185,39 @@ public record AppConfig(
         String jwtSecret = readJwtSecret(env);
 
         DbParsed db = readDatabase(env);
+        DbPool dbPool = readDbPool(env);
 
         return new AppConfig(
                 httpAddr,
                 httpPort,
+                readBoolean(env, ENV_HTTP_VIRTUAL_THREADS, false),
+                readCompression(env),
                 jwtSecret,
+                (int) readLong(env, ENV_JWT_CACHE_SIZE, DEFAULT_JWT_CACHE_SIZE),
+                readBcryptCost(env),
+                (int) Math.max(1, readLong(env, ENV_BCRYPT_THREADS, Runtime.getRuntime().availableProcessors())),
+                (int) Math.max(1, readLong(env, ENV_BCRYPT_QUEUE, DEFAULT_BCRYPT_QUEUE)),
                 db.jdbcUrl(),
                 db.user(),
-                db.password()
+                db.password(),
+                dbPool,
+                readReplica(env, dbPool),
+                readShards(env, dbPool),
+                readLong(env, ENV_AVAILABILITY_RESYNC_SECONDS, DEFAULT_AVAILABILITY_RESYNC_SECONDS),
+                (int) readLong(env, ENV_CAR_CACHE_SIZE, DEFAULT_CAR_CACHE_SIZE),
+                Math.max(0, readLong(env, ENV_CAR_CACHE_TTL_SECONDS, DEFAULT_CAR_CACHE_TTL_SECONDS)),
+                (int) Math.max(1, readLong(env, ENV_CAR_SEARCH_CACHE_SIZE, DEFAULT_CAR_SEARCH_CACHE_SIZE)),
+                Math.max(0, readLong(env, ENV_CAR_SEARCH_CACHE_MS, DEFAULT_CAR_SEARCH_CACHE_MS)),
+                readRecoveryStore(env),
+                (int) Math.max(1, readLong(env, ENV_RECOVERY_MAX_TOKENS, DEFAULT_RECOVERY_MAX_TOKENS)),
+                readLong(env, ENV_RECOVERY_CLEANUP_SECONDS, DEFAULT_RECOVERY_CLEANUP_SECONDS),
+                readRateLimits(env),
+                (int) Math.max(0, readLong(env, ENV_ADMISSION_MAX_CONCURRENT,
+                        (long) dbPool.maxSize() * ADMISSION_PERMITS_PER_CONNECTION)),
+                Math.max(0, readLong(env, ENV_ADMISSION_WAIT_MS, DEFAULT_ADMISSION_WAIT_MS)),
+                readEventLog(env),
+                readIdempotency(env),
+                readStartup(env)
         );
     }
 
@@ -60,6 +231,289 @@ public record AppConfig(
         return (raw == null || raw.isBlank()) ? DEFAULT_JWT_SECRET : raw.trim();
     }
 
+    /**
+     * Response compression: {@code gzip}, {@code brotli} (needs brotli4j on the classpath,
+     * otherwise gzip is used) or {@code none}. Bodies shorter than {@code minSizeBytes} are
+     * sent as is.
+     */
+    public record Compression(
+            String algorithm,
+            int level,
+            int minSizeBytes
+    ) {}
+
+    private static Compression readCompression(Map<String, String> env) {
+        String raw = env.get(ENV_HTTP_COMPRESSION);
+        String algorithm = raw == null ? COMPRESSION_GZIP : raw.trim().toLowerCase();
+        if (!COMPRESSION_BROTLI.equals(algorithm) && !COMPRESSION_NONE.equals(algorithm)) {
+            algorithm = COMPRESSION_GZIP;
+        }
+        boolean brotli = COMPRESSION_BROTLI.equals(algorithm);
+        long level = readLong(env, ENV_HTTP_COMPRESSION_LEVEL, brotli ? DEFAULT_BROTLI_LEVEL : DEFAULT_GZIP_LEVEL);
+        return new Compression(
+                algorithm,
+                (int) Math.max(0, Math.min(brotli ? 11 : 9, level)),
+                (int) Math.max(0, readLong(env, ENV_HTTP_COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE))
+        );
+    }
+
+    /**
+     * HikariCP pool settings plus the PgJDBC statement-cache properties. A {@code minIdle}
+     * of {@code -1} means "same as {@code maxSize}" (a fixed-size pool, Hikari's default).
+     */
+    public record DbPool(
+            int maxSize,
+            int minIdle,
+            long connectionTimeoutMs,
+            long idleTimeoutMs,
+            long maxLifetimeMs,
+            long leakDetectionMs,
+            int prepareThreshold,
+            int statementCacheQueries,
+            int statementCacheSizeMiB
+    ) {}
+
+    private static DbPool readDbPool(Map<String, String> env) {
+        int maxSize = (int) Math.max(1, readLong(env, ENV_DB_POOL_SIZE, DEFAULT_DB_POOL_SIZE));
+        int minIdle = (int) Math.min(maxSize, readLong(env, ENV_DB_POOL_MIN_IDLE, -1));
+        return new DbPool(
+                maxSize,
+                minIdle,
+                Math.max(250, readLong(env, ENV_DB_CONNECTION_TIMEOUT_MS, DEFAULT_DB_CONNECTION_TIMEOUT_MS)),
+                Math.max(0, readLong(env, ENV_DB_IDLE_TIMEOUT_MS, DEFAULT_DB_IDLE_TIMEOUT_MS)),
+                Math.max(0, readLong(env, ENV_DB_MAX_LIFETIME_MS, DEFAULT_DB_MAX_LIFETIME_MS)),
+                Math.max(0, readLong(env, ENV_DB_LEAK_DETECTION_MS, DEFAULT_DB_LEAK_DETECTION_MS)),
+                (int) readLong(env, ENV_DB_PREPARE_THRESHOLD, DEFAULT_DB_PREPARE_THRESHOLD),
+                (int) Math.max(0, readLong(env, ENV_DB_STATEMENT_CACHE_QUERIES, DEFAULT_DB_STATEMENT_CACHE_QUERIES)),
+                (int) Math.max(0, readLong(env, ENV_DB_STATEMENT_CACHE_SIZE_MIB, DEFAULT_DB_STATEMENT_CACHE_SIZE_MIB))
+        );
+    }
+
+    /**
+     * Optional read replica. {@code jdbcUrl} is {@code null} when none is configured; the pool
+     * uses the primary's credentials and settings except for its size and a short connection
+     * timeout, since a read that cannot get a replica connection falls back to the primary.
+     * A client's reads stay on the primary for {@code stickyMs} after it wrote, and after a
+     * failure the replica is left alone for {@code retryMs}.
+     */
+    public record Replica(
+            String jdbcUrl,
+            DbPool pool,
+            long stickyMs,
+            long retryMs
+    ) {}
+
+    private static Replica readReplica(Map<String, String> env, DbPool primary) {
+        String url = env.get(ENV_REPLICA_JDBC_URL);
+        int size = (int) Math.max(1, readLong(env, ENV_REPLICA_POOL_SIZE, primary.maxSize()));
+        DbPool pool = new DbPool(
+                size,
+                Math.min(size, primary.minIdle()),
+                Math.max(250, readLong(env, ENV_REPLICA_CONNECTION_TIMEOUT_MS, DEFAULT_REPLICA_CONNECTION_TIMEOUT_MS)),
+                primary.idleTimeoutMs(),
+                primary.maxLifetimeMs(),
+                primary.leakDetectionMs(),
+                primary.prepareThreshold(),
+                primary.statementCacheQueries(),
+                primary.statementCacheSizeMiB()
+        );
+        return new Replica(
+                (url == null || url.isBlank()) ? null : url.trim(),
+                pool,
+                Math.max(0, readLong(env, ENV_REPLICA_STICKY_MS, DEFAULT_REPLICA_STICKY_MS)),
+                Math.max(0, readLong(env, ENV_REPLICA_RETRY_MS, DEFAULT_REPLICA_RETRY_MS))
+        );
+    }
+
+    /**
+     * Reservation shards. Empty {@code jdbcUrls} means no sharding: cars and reservations live in
+     * the main database. Otherwise shard {@code i} holds the cars with {@code car_id mod N = i}
+     * and their reservations, and the main database keeps clients and everything else. Each
+     * shard pool uses the main credentials and settings except for its size.
+     */
+    public record Shards(
+            List<String> jdbcUrls,
+            DbPool pool
+    ) {
+        public boolean enabled() {
+            return !jdbcUrls.isEmpty();
+        }
+    }
+
+    private static Shards readShards(Map<String, String> env, DbPool primary) {
+        List<String> urls = new ArrayList<>();
+        String raw = env.get(ENV_SHARD_JDBC_URLS);
+        if (raw != null) {
+            for (String url : raw.split(",")) {
+                if (!url.isBlank()) urls.add(url.trim());
+            }
+        }
+        int size = (int) Math.max(1, readLong(env, ENV_SHARD_POOL_SIZE, primary.maxSize()));
+        DbPool pool = new DbPool(
+                size,
+                Math.min(size, primary.minIdle()),
+                primary.connectionTimeoutMs(),
+                primary.idleTimeoutMs(),
+                primary.maxLifetimeMs(),
+                primary.leakDetectionMs(),
+                primary.prepareThreshold(),
+                primary.statementCacheQueries(),
+                primary.statementCacheSizeMiB()
+        );
+        return new Shards(List.copyOf(urls), pool);
+    }
+
+    /**
+     * Per-route-class request rates (requests per second and burst size per client or address).
+     * A rate of {@code 0} turns the limit off for that class. {@code trustedProxies} are the
+     * addresses or CIDR ranges of reverse proxies whose {@code X-Forwarded-For} names the client.
+     */
+    public record RateLimits(
+            double authRps,
+            int authBurst,
+            double carsRps,
+            int carsBurst,
+            double reservationsRps,
+            int reservationsBurst,
+            int stripes,
+            List<String> trustedProxies
+    ) {}
+
+    private static RateLimits readRateLimits(Map<String, String> env) {
+        return new RateLimits(
+                Math.max(0, readDouble(env, ENV_RATE_LIMIT_AUTH_RPS, DEFAULT_RATE_LIMIT_AUTH_RPS)),
+                (int) Math.max(1, readLong(env, ENV_RATE_LIMIT_AUTH_BURST, DEFAULT_RATE_LIMIT_AUTH_BURST)),
+                Math.max(0, readDouble(env, ENV_RATE_LIMIT_CARS_RPS, DEFAULT_RATE_LIMIT_CARS_RPS)),
+                (int) Math.max(1, readLong(env, ENV_RATE_LIMIT_CARS_BURST, DEFAULT_RATE_LIMIT_CARS_BURST)),
+                Math.max(0, readDouble(env, ENV_RATE_LIMIT_RESERVATIONS_RPS, DEFAULT_RATE_LIMIT_RESERVATIONS_RPS)),
+                (int) Math.max(1, readLong(env, ENV_RATE_LIMIT_RESERVATIONS_BURST, DEFAULT_RATE_LIMIT_RESERVATIONS_BURST)),
+                (int) Math.max(1, readLong(env, ENV_RATE_LIMIT_STRIPES, DEFAULT_RATE_LIMIT_STRIPES)),
+                readTrustedProxies(env)
+        );
+    }
+
+    private static List<String> readTrustedProxies(Map<String, String> env) {
+        List<String> proxies = new ArrayList<>();
+        String raw = env.get(ENV_TRUSTED_PROXIES);
+        if (raw != null) {
+            for (String p : raw.split(",")) {
+                if (!p.isBlank()) proxies.add(p.trim());
+            }
+        }
+        return List.copyOf(proxies);
+    }
+
+    /**
+     * Reservation event log: in-memory queue capacity, maximum events per INSERT, and the file
+     * events go to when the queue is full or the database rejects a batch.
+     */
+    public record EventLog(
+            int queueSize,
+            int batchSize,
+            String spillPath
+    ) {}
+
+    private static EventLog readEventLog(Map<String, String> env) {
+        String spill = env.get(ENV_EVENT_LOG_SPILL_PATH);
+        return new EventLog(
+                (int) Math.max(1, readLong(env, ENV_EVENT_LOG_QUEUE_SIZE, DEFAULT_EVENT_LOG_QUEUE_SIZE)),
+                (int) Math.max(1, readLong(env, ENV_EVENT_LOG_BATCH_SIZE, DEFAULT_EVENT_LOG_BATCH_SIZE)),
+                (spill == null || spill.isBlank()) ? DEFAULT_EVENT_LOG_SPILL_PATH : spill.trim()
+        );
+    }
+
+    /**
+     * {@code Idempotency-Key} handling for reservation creation: how many finished responses are
+     * kept in memory, how long a key is remembered, and how often expired keys are deleted.
+     */
+    public record Idempotency(
+            int cacheSize,
+            long ttlSeconds,
+            long purgeSeconds
+    ) {}
+
+    private static Idempotency readIdempotency(Map<String, String> env) {
+        return new Idempotency(
+                (int) Math.max(1, readLong(env, ENV_IDEMPOTENCY_CACHE_SIZE, DEFAULT_IDEMPOTENCY_CACHE_SIZE)),
+                Math.max(1, readLong(env, ENV_IDEMPOTENCY_TTL_SECONDS, DEFAULT_IDEMPOTENCY_TTL_SECONDS)),
+                readLong(env, ENV_IDEMPOTENCY_PURGE_SECONDS, DEFAULT_IDEMPOTENCY_PURGE_SECONDS)
+        );
+    }
+
+    /**
+     * Startup and shutdown: what Flyway does ({@code migrate}, {@code validate} or {@code skip}),
+     * whether pool connections are opened and their statements prepared before serving, how many
+     * loopback requests warm the handlers, how long to keep serving after reporting not-ready,
+     * and how long to wait for in-flight requests before stopping anyway. {@code exitWhenReady}
+     * makes a training run: start, warm up, shut down (used to dump the AppCDS archive).
+     */
+    public record Startup(
+            String flywayMode,
+            boolean prewarmPool,
+            int warmupRequests,
+            long drainDelayMs,
+            long shutdownTimeoutMs,
+            boolean exitWhenReady
+    ) {}
+
+    private static Startup readStartup(Map<String, String> env) {
+        return new Startup(
+                readFlywayMode(env),
+                readBoolean(env, ENV_DB_PREWARM, true),
+                (int) Math.max(0, readLong(env, ENV_STARTUP_WARMUP_REQUESTS, DEFAULT_STARTUP_WARMUP_REQUESTS)),
+                Math.max(0, readLong(env, ENV_SHUTDOWN_DRAIN_DELAY_MS, DEFAULT_SHUTDOWN_DRAIN_DELAY_MS)),
+                Math.max(0, readLong(env, ENV_SHUTDOWN_TIMEOUT_MS, DEFAULT_SHUTDOWN_TIMEOUT_MS)),
+                readBoolean(env, ENV_STARTUP_EXIT_WHEN_READY, false)
+        );
+    }
+
+    private static String readFlywayMode(Map<String, String> env) {
+        String raw = env.get(ENV_FLYWAY_MODE);
+        if (raw == null) return FLYWAY_MIGRATE;
+        String v = raw.trim().toLowerCase();
+        if (v.equals(FLYWAY_VALIDATE) || v.equals("validate-only")) return FLYWAY_VALIDATE;
+        if (v.equals(FLYWAY_SKIP)) return FLYWAY_SKIP;
+        return FLYWAY_MIGRATE;
+    }
+
+    private static String readRecoveryStore(Map<String, String> env) {
+        String raw = env.get(ENV_RECOVERY_STORE);
+        if (raw != null && RECOVERY_STORE_MEMORY.equalsIgnoreCase(raw.trim())) return RECOVERY_STORE_MEMORY;
+        return RECOVERY_STORE_POSTGRES;
+    }
+
+    private static int readBcryptCost(Map<String, String> env) {
+        long cost = readLong(env, ENV_BCRYPT_COST, DEFAULT_BCRYPT_COST);
+        return (cost >= 4 && cost <= 31) ? (int) cost : DEFAULT_BCRYPT_COST;
+    }
+
+    private static long readLong(Map<String, String> env, String name, long def) {
+        String raw = env.get(name);
+        if (raw == null || raw.isBlank()) return def;
+        try {
+            return Long.parseLong(raw.trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static double readDouble(Map<String, String> env, String name, double def) {
+        String raw = env.get(name);
+        if (raw == null || raw.isBlank()) return def;
+        try {
+            return Double.parseDouble(raw.trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static boolean readBoolean(Map<String, String> env, String name, boolean def) {
+        String raw = env.get(name);
+        if (raw == null || raw.isBlank()) return def;
+        String v = raw.trim();
+        return "true".equalsIgnoreCase(v) || "1".equals(v) || "yes".equalsIgnoreCase(v);
+    }
+
     private static int parsePort(String httpAddr) {
         if (httpAddr == null) return DEFAULT_HTTP_PORT;
         String s = httpAddr.trim();
@@ -6,5 +6,7 @@ public enum ErrorCode {
     NOT_FOUND,
     UNAUTHORIZED,
     CLIENT_BLOCKED,
+    UNAVAILABLE,
+    RATE_LIMITED,
     INTERNAL
 }
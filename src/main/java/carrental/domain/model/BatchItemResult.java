@@ -0,0 +1,15 @@
+package carrental.domain.model;
+
+import carrental.domain.error.ErrorCode;
+
+/**
+ * Outcome of one item of a batch booking. Exactly one of {@code reservation} and
+ * {@code error} is set, except for items rolled back because another item of an
+ * all-or-nothing batch failed, where both are {@code null}.
+ */
+public record BatchItemResult(
+        int index,
+        ReservationView reservation,
+        ErrorCode error,
+        String message
+) {}
@@ -0,0 +1,10 @@
+package carrental.domain.model;
+
+import java.time.LocalDate;
+
+public record BookedRange(
+        long rentalId,
+        long carId,
+        LocalDate dateFrom,
+        LocalDate dateTo
+) {}
@@ -0,0 +1,9 @@
+package carrental.domain.model;
+
+import java.time.LocalDate;
+
+public record BookingRequest(
+        long carId,
+        LocalDate dateFrom,
+        LocalDate dateTo
+) {}
@@ -0,0 +1,14 @@
+package carrental.domain.model;
+
+import java.time.LocalDate;
+
+/**
+ * Availability of one car over {@code [from, to)} as run lengths in days: free, booked, free, …
+ * The first run is free and may be {@code 0}.
+ */
+public record CarCalendar(
+        long carId,
+        LocalDate from,
+        LocalDate to,
+        int[] runs
+) {}
@@ -0,0 +1,7 @@
+package carrental.domain.model;
+
+/** What is stored under an idempotency key; {@code body} is {@code null} while the first request runs. */
+public record IdempotentResponse(
+        byte[] requestHash,
+        byte[] body
+) {}
@@ -0,0 +1,8 @@
+package carrental.domain.model;
+
+import java.time.LocalDate;
+
+public record ReservationCursor(
+        LocalDate dateFrom,
+        long rentalId
+) {}
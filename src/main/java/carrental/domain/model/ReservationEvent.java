@@ -0,0 +1,17 @@
+package carrental.domain.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A reservation moving to {@code status}. {@code carId} is {@code null} when the transition
+ * was made without loading the reservation (cancel only knows the rental and the client).
+ */
+public record ReservationEvent(
+        UUID eventId,
+        long rentalId,
+        long clientId,
+        Long carId,
+        String status,
+        Instant occurredAt
+) {}
@@ -0,0 +1,8 @@
+package carrental.domain.model;
+
+import java.util.List;
+
+public record ReservationPage(
+        List<ReservationView> items,
+        ReservationCursor next
+) {}
@@ -0,0 +1,9 @@
+package carrental.domain.model;
+
+/** Outcome of setting a reservation's status. */
+public enum StatusChange {
+    NOT_FOUND,
+    /** The reservation already had that status; nothing was written. */
+    UNCHANGED,
+    CHANGED
+}
@@ -0,0 +1,63 @@
+package carrental.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes HikariCP pool state into a {@link MetricsRegistry}, labelled by pool name.
+ */
+public final class HikariMetrics implements MetricsTrackerFactory {
+    private final MetricsRegistry registry;
+
+    public HikariMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats stats) {
+        registry.gauge("hikari_connections_active", "Connections currently in use",
+                stats::getActiveConnections, "pool", poolName);
+        registry.gauge("hikari_connections_idle", "Idle connections",
+                stats::getIdleConnections, "pool", poolName);
+        registry.gauge("hikari_connections_pending", "Threads waiting for a connection",
+                stats::getPendingThreads, "pool", poolName);
+        registry.gauge("hikari_connections", "Total connections",
+                stats::getTotalConnections, "pool", poolName);
+        registry.gauge("hikari_connections_max", "Maximum pool size",
+                stats::getMaxConnections, "pool", poolName);
+
+        Histogram acquire = registry.histogram("hikari_connection_acquire_seconds",
+                "Time spent waiting for a pooled connection", "pool", poolName);
+        Histogram usage = registry.histogram("hikari_connection_usage_seconds",
+                "Time a connection was held before being returned", "pool", poolName);
+        Histogram creation = registry.histogram("hikari_connection_creation_seconds",
+                "Time to open a physical connection", "pool", poolName);
+        Counter timeouts = registry.counter("hikari_connection_timeouts_total",
+                "getConnection() calls that timed out", "pool", poolName);
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(elapsedBorrowedMillis, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creation.record(connectionCreatedMillis, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.inc();
+            }
+        };
+    }
+}
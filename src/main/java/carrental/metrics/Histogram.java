@@ -0,0 +1,78 @@
+package carrental.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram over nanosecond values with log-linear buckets:
+ * every power of two is split into {@value #SUB_BUCKETS} equal parts, which keeps
+ * the relative error of a reported quantile under 12.5% at a fixed 4 KiB footprint.
+ * Recording does not allocate.
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAdder count = new LongAdder();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        sum.add(nanos);
+        count.increment();
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long amount, TimeUnit unit) {
+        record(unit.toNanos(amount));
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+
+    /** Upper bound in nanoseconds of the bucket that holds quantile {@code q}. */
+    public long quantileNanos(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int index(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int mag = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (mag - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((mag - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    static long upperBound(int idx) {
+        if (idx < SUB_BUCKETS) return idx;
+        int mag = (idx >>> SUB_BITS) + SUB_BITS - 1;
+        long sub = idx & (SUB_BUCKETS - 1);
+        long lower = (1L << mag) | (sub << (mag - SUB_BITS));
+        long width = 1L << (mag - SUB_BITS);
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,117 @@
+package carrental.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the process metrics and renders them in the Prometheus text exposition
+ * format. Histograms are exposed as summaries (quantiles, {@code _sum} and
+ * {@code _count}, in seconds). Labels are given as name/value pairs.
+ */
+public final class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series
+                .computeIfAbsent(renderLabels(labels), k -> new Counter());
+    }
+
+    /** Counter whose value is owned elsewhere and read at scrape time. */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "counter").series.put(renderLabels(labels), value);
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "summary").series
+                .computeIfAbsent(renderLabels(labels), k -> new Histogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(renderLabels(labels), value);
+    }
+
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Map.Entry<String, Family> e : families.entrySet()) {
+            String name = e.getKey();
+            Family f = e.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(f.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(f.type).append('\n');
+            List<Map.Entry<String, Object>> series = new ArrayList<>(f.series.entrySet());
+            series.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<String, Object> s : series) {
+                writeSeries(sb, name, s.getKey(), s.getValue());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void writeSeries(StringBuilder sb, String name, String labels, Object metric) {
+        if (metric instanceof Counter c) {
+            sample(sb, name, labels, c.get());
+        } else if (metric instanceof LongSupplier c) {
+            sample(sb, name, labels, c.getAsLong());
+        } else if (metric instanceof DoubleSupplier g) {
+            sample(sb, name, labels, g.getAsDouble());
+        } else if (metric instanceof Histogram h) {
+            for (double q : QUANTILES) {
+                String ql = "quantile=\"" + q + "\"";
+                String all = labels.isEmpty() ? "{" + ql + "}" : labels.substring(0, labels.length() - 1) + "," + ql + "}";
+                sample(sb, name, all, h.quantileNanos(q) / 1e9);
+            }
+            sample(sb, name + "_sum", labels, h.sumNanos() / 1e9);
+            sample(sb, name + "_count", labels, h.count());
+        }
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private Family family(String name, String help, String type) {
+        Family f = families.computeIfAbsent(name, k -> new Family(help, type));
+        if (!f.type.equals(type)) {
+            throw new IllegalArgumentException("metric " + name + " already registered as " + f.type);
+        }
+        return f;
+    }
+
+    private static String renderLabels(String... labels) {
+        if (labels.length == 0) return "";
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
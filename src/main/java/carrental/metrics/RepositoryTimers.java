@@ -0,0 +1,38 @@
+package carrental.metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wraps a repository so every interface method call is recorded in
+ * {@code db_call_duration_seconds{repository, method}}. Histograms are created up front,
+ * so a call costs one map lookup besides the proxy dispatch itself.
+ */
+public final class RepositoryTimers {
+    private RepositoryTimers() {}
+
+    public static <T> T wrap(MetricsRegistry metrics, Class<T> iface, T target) {
+        Map<Method, Histogram> timers = new HashMap<>();
+        for (Method m : iface.getMethods()) {
+            timers.put(m, metrics.histogram("db_call_duration_seconds",
+                    "Time spent in repository calls, connection acquisition included",
+                    "repository", iface.getSimpleName(), "method", m.getName()));
+        }
+
+        Object proxy = Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, (p, m, args) -> {
+            Histogram h = timers.get(m);
+            long start = System.nanoTime();
+            try {
+                return m.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (h != null) h.recordSince(start);
+            }
+        });
+        return iface.cast(proxy);
+    }
+}
@@ -8,4 +8,5 @@ import java.util.List;
 public interface CarRepository {
     List<Car> listAvailable(LocalDate dateFrom, LocalDate dateTo);
     Car getById(long id);
+    List<Car> listAll();
 }
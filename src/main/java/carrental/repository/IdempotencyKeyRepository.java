@@ -0,0 +1,20 @@
+package carrental.repository;
+
+import carrental.domain.model.IdempotentResponse;
+
+import java.time.Instant;
+
+public interface IdempotencyKeyRepository {
+    /**
+     * Records that a request with this key has started. {@code false} if the key is already
+     * taken by a live entry: a finished one, or one still running that started less than
+     * {@code staleAfterSeconds} ago.
+     */
+    boolean claim(long clientId, String key, byte[] requestHash, Instant expiresAt, long staleAfterSeconds);
+    /** The unexpired entry for the key, or {@code null}. */
+    IdempotentResponse find(long clientId, String key);
+    void complete(long clientId, String key, byte[] body);
+    /** Drops an unfinished claim so that the request can be retried. */
+    void release(long clientId, String key);
+    int deleteExpired();
+}
@@ -0,0 +1,11 @@
+package carrental.repository;
+
+import java.time.Instant;
+
+public interface RecoveryTokenRepository {
+    /** Stores the token for {@code email}, replacing any earlier one. */
+    void save(String email, String token, Instant expiresAt);
+    /** {@code true} if {@code token} is the current, unexpired token for {@code email}. */
+    boolean matches(String email, String token);
+    int deleteExpired();
+}
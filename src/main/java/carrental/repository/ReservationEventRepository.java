@@ -0,0 +1,13 @@
+package carrental.repository;
+
+import carrental.domain.model.ReservationEvent;
+
+import java.util.List;
+
+public interface ReservationEventRepository {
+    /**
+     * Appends the events in one statement. Events whose id is already stored are skipped, so
+     * a batch that is retried after an ambiguous failure is not recorded twice.
+     */
+    void append(List<ReservationEvent> events);
+}
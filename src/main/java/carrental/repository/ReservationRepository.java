@@ -1,14 +1,26 @@
 package carrental.repository;
 
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookedRange;
+import carrental.domain.model.BookingRequest;
+import carrental.domain.model.ReservationCursor;
 import carrental.domain.model.ReservationView;
+import carrental.domain.model.StatusChange;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ReservationRepository {
     boolean isClientAllowed(long clientId);
     long create(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo);
-    boolean updateStatus(long rentalId, long clientId, String status);
+    ReservationView createConfirmed(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo);
+    List<BatchItemResult> createConfirmedBatch(long clientId, List<BookingRequest> items, boolean atomic);
+    StatusChange updateStatus(long rentalId, long clientId, String status);
     List<ReservationView> listByClient(long clientId);
+    List<ReservationView> listByClientAfter(long clientId, ReservationCursor after, int limit);
+    void streamByClient(long clientId, Consumer<ReservationView> sink);
     ReservationView getByIdForClient(long rentalId, long clientId);
+    List<BookedRange> listActiveRanges(LocalDate endingAfter);
+    List<BookedRange> listCarRanges(long carId, LocalDate dateFrom, LocalDate dateTo);
 }
@@ -7,45 +7,57 @@ import carrental.repository.CarRepository;
 
 import javax.sql.DataSource;
 import java.sql.Date;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
 
 public final class JdbcCarRepository implements CarRepository {
+    private static final String CAR_COLUMNS = """
+            SELECT car_id, plate_number, brand, model, COALESCE(status,'available') AS status,
+                   daily_cost, insurance_cost, prod_year
+            """;
+
+    private static final QueryExecutor.Query LIST_AVAILABLE = QueryExecutor.register("cars.listAvailable", CAR_COLUMNS + """
+            FROM cars c
+            WHERE NOT EXISTS (
+                SELECT 1
+                FROM reservations r
+                WHERE r.car_id = c.car_id
+                  AND r.status <> 'canceled'
+                  AND daterange(r.date_from, r.date_to, '[)') && daterange(?, ?, '[)')
+            )
+            ORDER BY car_id
+            """);
+    private static final QueryExecutor.Query GET_BY_ID = QueryExecutor.register("cars.getById", CAR_COLUMNS + """
+            FROM cars
+            WHERE car_id = ?
+            """);
+    private static final QueryExecutor.Query LIST_ALL = QueryExecutor.register("cars.listAll", CAR_COLUMNS + """
+            FROM cars
+            ORDER BY car_id
+            """);
+
     private final DataSource ds;
+    private final ReplicaRouting reads;
 
     public JdbcCarRepository(DataSource ds) {
+        this(ds, ReplicaRouting.primaryOnly(ds));
+    }
+
+    /** The listing and single-car reads go through {@code reads}; {@link #listAll} feeds the availability index and stays on the primary. */
+    public JdbcCarRepository(DataSource ds, ReplicaRouting reads) {
         this.ds = ds;
+        this.reads = reads;
     }
 
     @Override
     public List<Car> listAvailable(LocalDate dateFrom, LocalDate dateTo) {
         try {
-            return JdbcUtils.queryList(ds, """
-                    SELECT car_id, plate_number, brand, model, COALESCE(status,'available') AS status,
-                           daily_cost, insurance_cost, prod_year
-                    FROM cars c
-                    WHERE NOT EXISTS (
-                        SELECT 1
-                        FROM reservations r
-                        WHERE r.car_id = c.car_id
-                          AND r.status <> 'canceled'
-                          AND daterange(r.date_from, r.date_to, '[)') && daterange(?, ?, '[)')
-                    )
-                    ORDER BY car_id
-                    """, ps -> {
+            return reads.read(db -> QueryExecutor.list(db, LIST_AVAILABLE, ps -> {
                 ps.setDate(1, Date.valueOf(dateFrom));
                 ps.setDate(2, Date.valueOf(dateTo));
-            }, rs -> new Car(
-                    rs.getLong("car_id"),
-                    rs.getString("plate_number"),
-                    rs.getString("brand"),
-                    rs.getString("model"),
-                    rs.getString("status"),
-                    rs.getBigDecimal("daily_cost"),
-                    rs.getBigDecimal("insurance_cost"),
-                    (Integer) rs.getObject("prod_year")
-            ));
+            }, JdbcCarRepository::mapCar));
         } catch (SQLException e) {
             throw PostgresErrorMapper.map(e);
         }
@@ -54,21 +66,7 @@ public final class JdbcCarRepository implements CarRepository {
     @Override
     public Car getById(long id) {
         try {
-            Car c = JdbcUtils.queryOne(ds, """
-                    SELECT car_id, plate_number, brand, model, COALESCE(status,'available') AS status,
-                           daily_cost, insurance_cost, prod_year
-                    FROM cars
-                    WHERE car_id = ?
-                    """, ps -> ps.setLong(1, id), rs -> new Car(
-                    rs.getLong("car_id"),
-                    rs.getString("plate_number"),
-                    rs.getString("brand"),
-                    rs.getString("model"),
-                    rs.getString("status"),
-                    rs.getBigDecimal("daily_cost"),
-                    rs.getBigDecimal("insurance_cost"),
-                    (Integer) rs.getObject("prod_year")
-            ));
+            Car c = reads.read(db -> QueryExecutor.one(db, GET_BY_ID, id, JdbcCarRepository::mapCar));
 
             if (c == null) throw new DomainException(ErrorCode.NOT_FOUND, "car not found");
             return c;
@@ -76,4 +74,27 @@ public final class JdbcCarRepository implements CarRepository {
             throw PostgresErrorMapper.map(e);
         }
     }
+
+    @Override
+    public List<Car> listAll() {
+        try {
+            return QueryExecutor.list(ds, LIST_ALL, JdbcCarRepository::mapCar);
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    /** Columns in {@link #CAR_COLUMNS} order. */
+    private static Car mapCar(ResultSet rs) throws SQLException {
+        return new Car(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getString(4),
+                rs.getString(5),
+                rs.getBigDecimal(6),
+                rs.getBigDecimal(7),
+                (Integer) rs.getObject(8)
+        );
+    }
 }
@@ -10,6 +10,19 @@ import javax.sql.DataSource;
 import java.sql.SQLException;
 
 public final class JdbcClientRepository implements ClientRepository {
+    private static final QueryExecutor.Query CREATE = QueryExecutor.register("clients.create", """
+            INSERT INTO clients (full_name, passport_data, login, password_hash, email, phone, address)
+            VALUES (?,?,?,?,?,?,?)
+            RETURNING client_id
+            """);
+    private static final QueryExecutor.Query GET_BY_LOGIN = QueryExecutor.register("clients.getByLogin", """
+            SELECT client_id, full_name, passport_data, login, email, phone, address, password_hash
+            FROM clients
+            WHERE login = ?
+            """);
+    private static final QueryExecutor.Query EXISTS_EMAIL = QueryExecutor.register("clients.existsEmail",
+            "SELECT COUNT(*) AS cnt FROM clients WHERE email = ?");
+
     private final DataSource ds;
 
     public JdbcClientRepository(DataSource ds) {
@@ -19,11 +32,7 @@ public final class JdbcClientRepository implements ClientRepository {
     @Override
     public long create(Client client, String passwordHash) {
         try {
-            Long id = JdbcUtils.queryOne(ds, """
-                    INSERT INTO clients (full_name, passport_data, login, password_hash, email, phone, address)
-                    VALUES (?,?,?,?,?,?,?)
-                    RETURNING client_id
-                    """, ps -> {
+            Long id = QueryExecutor.one(ds, CREATE, ps -> {
                 ps.setString(1, client.fullName());
                 ps.setString(2, client.passportData());
                 ps.setString(3, client.login());
@@ -43,21 +52,17 @@ public final class JdbcClientRepository implements ClientRepository {
     @Override
     public ClientWithHash getByLogin(String login) {
         try {
-            ClientWithHash row = JdbcUtils.queryOne(ds, """
-                    SELECT client_id, full_name, passport_data, login, email, phone, address, password_hash
-                    FROM clients
-                    WHERE login = ?
-                    """, ps -> ps.setString(1, login), rs -> {
+            ClientWithHash row = QueryExecutor.one(ds, GET_BY_LOGIN, ps -> ps.setString(1, login), rs -> {
                 Client c = new Client(
-                        rs.getLong("client_id"),
-                        rs.getString("full_name"),
-                        rs.getString("passport_data"),
-                        rs.getString("login"),
-                        rs.getString("email"),
-                        rs.getString("phone"),
-                        rs.getString("address")
+                        rs.getLong(1),
+                        rs.getString(2),
+                        rs.getString(3),
+                        rs.getString(4),
+                        rs.getString(5),
+                        rs.getString(6),
+                        rs.getString(7)
                 );
-                return new ClientWithHash(c, rs.getString("password_hash"));
+                return new ClientWithHash(c, rs.getString(8));
             });
 
             if (row == null) throw new DomainException(ErrorCode.NOT_FOUND, "not found");
@@ -70,9 +75,7 @@ public final class JdbcClientRepository implements ClientRepository {
     @Override
     public boolean existsEmail(String email) {
         try {
-            Integer cnt = JdbcUtils.queryOne(ds, "SELECT COUNT(*) AS cnt FROM clients WHERE email = ?",
-                    ps -> ps.setString(1, email),
-                    rs -> rs.getInt("cnt"));
+            Integer cnt = QueryExecutor.one(ds, EXISTS_EMAIL, ps -> ps.setString(1, email), rs -> rs.getInt(1));
             return cnt != null && cnt > 0;
         } catch (SQLException e) {
             throw PostgresErrorMapper.map(e);
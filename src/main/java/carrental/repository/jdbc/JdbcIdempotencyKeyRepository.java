@@ -0,0 +1,107 @@
+package carrental.repository.jdbc;
+
+import carrental.domain.model.IdempotentResponse;
+import carrental.repository.IdempotencyKeyRepository;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Keeps idempotency keys in {@code idempotency_keys}, so a retry is recognised after a restart
+ * and by any instance. A key is claimed before the request runs and completed with the response
+ * body afterwards; the claim is what keeps two instances from running the same request.
+ */
+public final class JdbcIdempotencyKeyRepository implements IdempotencyKeyRepository {
+    private static final QueryExecutor.Query CLAIM = QueryExecutor.register("idempotencyKeys.claim", """
+            INSERT INTO idempotency_keys (client_id, idem_key, request_hash, expires_at)
+            VALUES (?,?,?,?)
+            ON CONFLICT (client_id, idem_key) DO UPDATE
+            SET request_hash = EXCLUDED.request_hash,
+                response = NULL,
+                created_at = now(),
+                expires_at = EXCLUDED.expires_at
+            WHERE idempotency_keys.expires_at <= now()
+               OR (idempotency_keys.response IS NULL
+                   AND idempotency_keys.created_at < now() - make_interval(secs => ?))
+            """);
+    private static final QueryExecutor.Query FIND = QueryExecutor.register("idempotencyKeys.find", """
+            SELECT request_hash, response
+            FROM idempotency_keys
+            WHERE client_id = ?
+              AND idem_key = ?
+              AND expires_at > now()
+            """);
+    private static final QueryExecutor.Query COMPLETE = QueryExecutor.register("idempotencyKeys.complete",
+            "UPDATE idempotency_keys SET response = ? WHERE client_id = ? AND idem_key = ?");
+    private static final QueryExecutor.Query RELEASE = QueryExecutor.register("idempotencyKeys.release",
+            "DELETE FROM idempotency_keys WHERE client_id = ? AND idem_key = ? AND response IS NULL");
+
+    private final DataSource ds;
+
+    public JdbcIdempotencyKeyRepository(DataSource ds) {
+        this.ds = ds;
+    }
+
+    @Override
+    public boolean claim(long clientId, String key, byte[] requestHash, Instant expiresAt, long staleAfterSeconds) {
+        try {
+            return QueryExecutor.update(ds, CLAIM, ps -> {
+                ps.setLong(1, clientId);
+                ps.setString(2, key);
+                ps.setBytes(3, requestHash);
+                ps.setTimestamp(4, Timestamp.from(expiresAt));
+                ps.setLong(5, staleAfterSeconds);
+            }) == 1;
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public IdempotentResponse find(long clientId, String key) {
+        try {
+            return QueryExecutor.one(ds, FIND, ps -> {
+                ps.setLong(1, clientId);
+                ps.setString(2, key);
+            }, rs -> new IdempotentResponse(rs.getBytes(1), rs.getBytes(2)));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public void complete(long clientId, String key, byte[] body) {
+        try {
+            QueryExecutor.update(ds, COMPLETE, ps -> {
+                ps.setBytes(1, body);
+                ps.setLong(2, clientId);
+                ps.setString(3, key);
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public void release(long clientId, String key) {
+        try {
+            QueryExecutor.update(ds, RELEASE, ps -> {
+                ps.setLong(1, clientId);
+                ps.setString(2, key);
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public int deleteExpired() {
+        try {
+            return JdbcUtils.exec(ds, "DELETE FROM idempotency_keys WHERE expires_at <= now()", null);
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+}
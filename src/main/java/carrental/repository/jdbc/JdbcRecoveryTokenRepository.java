@@ -0,0 +1,77 @@
+package carrental.repository.jdbc;
+
+import carrental.repository.RecoveryTokenRepository;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Keeps recovery tokens in {@code password_recovery_tokens}, so they survive restarts and are
+ * shared by every instance. Only the SHA-256 of a token is stored.
+ */
+public final class JdbcRecoveryTokenRepository implements RecoveryTokenRepository {
+    private static final QueryExecutor.Query SAVE = QueryExecutor.register("recoveryTokens.save", """
+            INSERT INTO password_recovery_tokens (email, token_hash, expires_at)
+            VALUES (?,?,?)
+            ON CONFLICT (email) DO UPDATE
+            SET token_hash = EXCLUDED.token_hash,
+                expires_at = EXCLUDED.expires_at
+            """);
+    private static final QueryExecutor.Query MATCH = QueryExecutor.register("recoveryTokens.match", """
+            SELECT token_hash
+            FROM password_recovery_tokens
+            WHERE email = ?
+              AND expires_at > now()
+            """);
+
+    private final DataSource ds;
+
+    public JdbcRecoveryTokenRepository(DataSource ds) {
+        this.ds = ds;
+    }
+
+    @Override
+    public void save(String email, String token, Instant expiresAt) {
+        try {
+            QueryExecutor.update(ds, SAVE, ps -> {
+                ps.setString(1, email);
+                ps.setBytes(2, sha256(token));
+                ps.setTimestamp(3, Timestamp.from(expiresAt));
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public boolean matches(String email, String token) {
+        try {
+            byte[] stored = QueryExecutor.one(ds, MATCH, ps -> ps.setString(1, email), rs -> rs.getBytes(1));
+            return stored != null && MessageDigest.isEqual(stored, sha256(token));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public int deleteExpired() {
+        try {
+            return JdbcUtils.exec(ds, "DELETE FROM password_recovery_tokens WHERE expires_at <= now()", null);
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package carrental.repository.jdbc;
+
+import carrental.domain.model.ReservationEvent;
+import carrental.repository.ReservationEventRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes a whole batch as one multi-row {@code INSERT ... SELECT FROM unnest(...)}: a single
+ * round trip and a single commit however many events the batch holds.
+ */
+public final class JdbcReservationEventRepository implements ReservationEventRepository {
+    private final DataSource ds;
+
+    public JdbcReservationEventRepository(DataSource ds) {
+        this.ds = ds;
+    }
+
+    @Override
+    public void append(List<ReservationEvent> events) {
+        if (events.isEmpty()) return;
+        int n = events.size();
+        UUID[] ids = new UUID[n];
+        Long[] rentals = new Long[n];
+        Long[] clients = new Long[n];
+        Long[] cars = new Long[n];
+        String[] statuses = new String[n];
+        Timestamp[] occurred = new Timestamp[n];
+        for (int i = 0; i < n; i++) {
+            ReservationEvent e = events.get(i);
+            ids[i] = e.eventId();
+            rentals[i] = e.rentalId();
+            clients[i] = e.clientId();
+            cars[i] = e.carId();
+            statuses[i] = e.status();
+            occurred[i] = Timestamp.from(e.occurredAt());
+        }
+
+        try {
+            JdbcUtils.exec(ds, """
+                    INSERT INTO reservation_events (event_id, rental_id, client_id, car_id, status, occurred_at)
+                    SELECT * FROM unnest(?::uuid[], ?::bigint[], ?::bigint[], ?::bigint[], ?::varchar[], ?::timestamptz[])
+                    ON CONFLICT (event_id) DO NOTHING
+                    """, ps -> {
+                Connection c = ps.getConnection();
+                ps.setArray(1, c.createArrayOf("uuid", ids));
+                ps.setArray(2, c.createArrayOf("bigint", rentals));
+                ps.setArray(3, c.createArrayOf("bigint", clients));
+                ps.setArray(4, c.createArrayOf("bigint", cars));
+                ps.setArray(5, c.createArrayOf("varchar", statuses));
+                ps.setArray(6, c.createArrayOf("timestamptz", occurred));
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+}
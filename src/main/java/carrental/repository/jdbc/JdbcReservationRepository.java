@@ -2,33 +2,128 @@ package carrental.repository.jdbc;
 
 import carrental.domain.error.DomainException;
 import carrental.domain.error.ErrorCode;
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookedRange;
+import carrental.domain.model.BookingRequest;
+import carrental.domain.model.ReservationCursor;
 import carrental.domain.model.ReservationView;
+import carrental.domain.model.StatusChange;
 import carrental.repository.ReservationRepository;
 
 import javax.sql.DataSource;
 import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public final class JdbcReservationRepository implements ReservationRepository {
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    /** The column order {@link #mapReservationView} reads. */
+    private static final String RESERVATION_COLUMNS = """
+            SELECT
+                rental_id,
+                client_id,
+                full_name,
+                car_id,
+                plate_number,
+                brand,
+                model,
+                date_from,
+                date_to,
+                status,
+                daily_rate_at_booking,
+                total_amount,
+                penalty_amount,
+                deposit_amount
+            """;
+    private static final String CLIENT_RESERVATIONS_SELECT = RESERVATION_COLUMNS + "FROM vw_client_reservations\n";
+
+    private static final QueryExecutor.Query IS_CLIENT_ALLOWED = QueryExecutor.register("reservations.isClientAllowed", """
+            SELECT COUNT(*) AS cnt
+            FROM reservations
+            WHERE client_id = ?
+              AND status IN ('pending','confirmed')
+              AND date_to >= CURRENT_DATE
+            """);
+    private static final QueryExecutor.Query CREATE = QueryExecutor.register("reservations.create",
+            "SELECT create_reservation(?,?,?,?)");
+    private static final QueryExecutor.Query CREATE_CONFIRMED = QueryExecutor.register("reservations.createConfirmed",
+            RESERVATION_COLUMNS + "FROM create_confirmed_reservation(?,?,?,?)\n");
+    // A concurrent update of the same row re-checks the status after the lock wait, so of two
+    // simultaneous cancellations only one reports a change.
+    private static final QueryExecutor.Query UPDATE_STATUS = QueryExecutor.register("reservations.updateStatus", """
+            WITH changed AS (
+              UPDATE reservations
+              SET status = ?
+              WHERE rental_id = ? AND client_id = ? AND status IS DISTINCT FROM ?
+              RETURNING 1
+            )
+            SELECT EXISTS (SELECT 1 FROM changed),
+                   EXISTS (SELECT 1 FROM reservations WHERE rental_id = ? AND client_id = ?)
+            """);
+    private static final QueryExecutor.Query LIST_BY_CLIENT = QueryExecutor.register("reservations.listByClient",
+            CLIENT_RESERVATIONS_SELECT + """
+            WHERE client_id = ?
+            ORDER BY date_from DESC, rental_id DESC
+            """);
+    private static final QueryExecutor.Query FIRST_PAGE = QueryExecutor.register("reservations.firstPage",
+            CLIENT_RESERVATIONS_SELECT + """
+            WHERE client_id = ?
+            ORDER BY date_from DESC, rental_id DESC
+            LIMIT ?
+            """);
+    private static final QueryExecutor.Query NEXT_PAGE = QueryExecutor.register("reservations.nextPage",
+            CLIENT_RESERVATIONS_SELECT + """
+            WHERE client_id = ?
+              AND (date_from, rental_id) < (?, ?)
+            ORDER BY date_from DESC, rental_id DESC
+            LIMIT ?
+            """);
+    private static final QueryExecutor.Query GET_FOR_CLIENT = QueryExecutor.register("reservations.getForClient",
+            CLIENT_RESERVATIONS_SELECT + """
+            WHERE rental_id = ? AND client_id = ?
+            """);
+    private static final QueryExecutor.Query ACTIVE_RANGES = QueryExecutor.register("reservations.activeRanges", """
+            SELECT rental_id, car_id, date_from, date_to
+            FROM reservations
+            WHERE status <> 'canceled'
+              AND date_to > ?
+            """);
+    private static final QueryExecutor.Query CAR_RANGES = QueryExecutor.register("reservations.carRanges", """
+            SELECT rental_id, car_id, date_from, date_to
+            FROM reservations
+            WHERE car_id = ?
+              AND status <> 'canceled'
+              AND daterange(date_from, date_to, '[)') && daterange(?, ?, '[)')
+            """);
+
     private final DataSource ds;
+    private final ReplicaRouting reads;
 
     public JdbcReservationRepository(DataSource ds) {
+        this(ds, ReplicaRouting.primaryOnly(ds));
+    }
+
+    /**
+     * Client reads and the per-car range query go through {@code reads}; writes, the booking
+     * checks and the ranges that load the availability index always use the primary.
+     */
+    public JdbcReservationRepository(DataSource ds, ReplicaRouting reads) {
         this.ds = ds;
+        this.reads = reads;
     }
 
     @Override
     public boolean isClientAllowed(long clientId) {
         try {
-            Integer cnt = JdbcUtils.queryOne(ds, """
-                    SELECT COUNT(*) AS cnt
-                    FROM reservations
-                    WHERE client_id = ?
-                      AND status IN ('pending','confirmed')
-                      AND date_to >= CURRENT_DATE
-                    """, ps -> ps.setLong(1, clientId), rs -> rs.getInt("cnt"));
+            Integer cnt = QueryExecutor.one(ds, IS_CLIENT_ALLOWED, clientId, rs -> rs.getInt(1));
             return cnt != null && cnt == 0;
         } catch (SQLException e) {
             throw PostgresErrorMapper.map(e);
@@ -38,7 +133,7 @@ public final class JdbcReservationRepository implements ReservationRepository {
     @Override
     public long create(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
         try {
-            Long id = JdbcUtils.queryOne(ds, "SELECT create_reservation(?,?,?,?)",
+            Long id = QueryExecutor.one(ds, CREATE,
                     ps -> {
                         ps.setLong(1, clientId);
                         ps.setLong(2, carId);
@@ -48,6 +143,7 @@ public final class JdbcReservationRepository implements ReservationRepository {
                     rs -> rs.getLong(1));
 
             if (id == null) throw new DomainException(ErrorCode.INTERNAL, "internal error");
+            reads.wrote(clientId);
             return id;
         } catch (SQLException e) {
             throw PostgresErrorMapper.map(e);
@@ -55,18 +151,109 @@ public final class JdbcReservationRepository implements ReservationRepository {
     }
 
     @Override
-    public boolean updateStatus(long rentalId, long clientId, String status) {
+    public ReservationView createConfirmed(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
+        try {
+            ReservationView v = QueryExecutor.one(ds, CREATE_CONFIRMED, ps -> {
+                ps.setLong(1, clientId);
+                ps.setLong(2, carId);
+                ps.setDate(3, Date.valueOf(dateFrom));
+                ps.setDate(4, Date.valueOf(dateTo));
+            }, JdbcReservationRepository::mapReservationView);
+
+            if (v == null) throw new DomainException(ErrorCode.INTERNAL, "internal error");
+            reads.wrote(clientId);
+            return v;
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public List<BatchItemResult> createConfirmedBatch(long clientId, List<BookingRequest> items, boolean atomic) {
         try {
-            int n = JdbcUtils.exec(ds, """
-                    UPDATE reservations
-                    SET status = ?
-                    WHERE rental_id = ? AND client_id = ?
-                    """, ps -> {
+            return JdbcUtils.inTransaction(ds, c -> {
+                int n = items.size();
+                Long[] carIds = new Long[n];
+                Date[] from = new Date[n];
+                Date[] to = new Date[n];
+                for (int i = 0; i < n; i++) {
+                    BookingRequest r = items.get(i);
+                    carIds[i] = r.carId();
+                    from[i] = Date.valueOf(r.dateFrom());
+                    to[i] = Date.valueOf(r.dateTo());
+                }
+
+                Long[] rentalIds = new Long[n];
+                boolean[] carFound = new boolean[n];
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT item_no, new_rental_id, car_found FROM create_confirmed_reservations(?,?,?,?)")) {
+                    ps.setLong(1, clientId);
+                    ps.setArray(2, c.createArrayOf("bigint", carIds));
+                    ps.setArray(3, c.createArrayOf("date", from));
+                    ps.setArray(4, c.createArrayOf("date", to));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            int i = rs.getInt(1) - 1;
+                            rentalIds[i] = (Long) rs.getObject(2);
+                            carFound[i] = rs.getBoolean(3);
+                        }
+                    }
+                }
+
+                boolean allCreated = true;
+                for (Long id : rentalIds) allCreated &= id != null;
+
+                Map<Long, ReservationView> views = new HashMap<>();
+                if (allCreated || !atomic) {
+                    List<Long> created = new ArrayList<>(n);
+                    for (Long id : rentalIds) if (id != null) created.add(id);
+                    try (PreparedStatement ps = c.prepareStatement(CLIENT_RESERVATIONS_SELECT + "WHERE rental_id = ANY(?)")) {
+                        ps.setArray(1, c.createArrayOf("bigint", created.toArray()));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                ReservationView v = mapReservationView(rs);
+                                views.put(v.rentalId(), v);
+                            }
+                        }
+                    }
+                    c.commit();
+                    reads.wrote(clientId);
+                }
+
+                List<BatchItemResult> out = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    if (rentalIds[i] != null) {
+                        out.add(new BatchItemResult(i, views.get(rentalIds[i]), null, null));
+                    } else if (!carFound[i]) {
+                        out.add(new BatchItemResult(i, null, ErrorCode.NOT_FOUND, "car not found"));
+                    } else {
+                        out.add(new BatchItemResult(i, null, ErrorCode.CONFLICT, "car is not available for selected dates"));
+                    }
+                }
+                if (atomic && !allCreated) {
+                    out.replaceAll(r -> r.reservation() != null ? new BatchItemResult(r.index(), null, null, null) : r);
+                }
+                return out;
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public StatusChange updateStatus(long rentalId, long clientId, String status) {
+        try {
+            StatusChange change = QueryExecutor.one(ds, UPDATE_STATUS, ps -> {
                 ps.setString(1, status);
                 ps.setLong(2, rentalId);
                 ps.setLong(3, clientId);
-            });
-            return n == 1;
+                ps.setString(4, status);
+                ps.setLong(5, rentalId);
+                ps.setLong(6, clientId);
+            }, rs -> rs.getBoolean(1) ? StatusChange.CHANGED
+                    : rs.getBoolean(2) ? StatusChange.UNCHANGED : StatusChange.NOT_FOUND);
+            if (change == StatusChange.CHANGED) reads.wrote(clientId);
+            return change;
         } catch (SQLException e) {
             throw PostgresErrorMapper.map(e);
         }
@@ -75,26 +262,50 @@ public final class JdbcReservationRepository implements ReservationRepository {
     @Override
     public List<ReservationView> listByClient(long clientId) {
         try {
-            return JdbcUtils.queryList(ds, """
-                    SELECT
-                        rental_id,
-                        client_id,
-                        full_name,
-                        car_id,
-                        plate_number,
-                        brand,
-                        model,
-                        date_from,
-                        date_to,
-                        status,
-                        daily_rate_at_booking,
-                        total_amount,
-                        penalty_amount,
-                        deposit_amount
-                    FROM vw_client_reservations
-                    WHERE client_id = ?
-                    ORDER BY date_from DESC, rental_id DESC
-                    """, ps -> ps.setLong(1, clientId), JdbcReservationRepository::mapReservationView);
+            return reads.readFor(clientId, db -> QueryExecutor.list(db, LIST_BY_CLIENT, clientId,
+                    JdbcReservationRepository::mapReservationView));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public List<ReservationView> listByClientAfter(long clientId, ReservationCursor after, int limit) {
+        try {
+            if (after == null) {
+                return reads.readFor(clientId, db -> QueryExecutor.list(db, FIRST_PAGE, ps -> {
+                    ps.setLong(1, clientId);
+                    ps.setInt(2, limit);
+                }, JdbcReservationRepository::mapReservationView));
+            }
+            return reads.readFor(clientId, db -> QueryExecutor.list(db, NEXT_PAGE, ps -> {
+                ps.setLong(1, clientId);
+                ps.setDate(2, Date.valueOf(after.dateFrom()));
+                ps.setLong(3, after.rentalId());
+                ps.setInt(4, limit);
+            }, JdbcReservationRepository::mapReservationView));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public void streamByClient(long clientId, Consumer<ReservationView> sink) {
+        try {
+            long[] sent = {0};
+            reads.readFor(clientId, db -> {
+                // Rows already went out; running the query again elsewhere would repeat them.
+                if (sent[0] > 0) throw new SQLException("read failed after " + sent[0] + " rows were streamed", "08006");
+                JdbcUtils.queryEach(db, CLIENT_RESERVATIONS_SELECT + """
+                        WHERE client_id = ?
+                        ORDER BY date_from DESC, rental_id DESC
+                        """, ps -> ps.setLong(1, clientId), STREAM_FETCH_SIZE,
+                        JdbcReservationRepository::mapReservationView, row -> {
+                            sent[0]++;
+                            sink.accept(row);
+                        });
+                return null;
+            });
         } catch (SQLException e) {
             throw PostgresErrorMapper.map(e);
         }
@@ -103,28 +314,10 @@ public final class JdbcReservationRepository implements ReservationRepository {
     @Override
     public ReservationView getByIdForClient(long rentalId, long clientId) {
         try {
-            ReservationView v = JdbcUtils.queryOne(ds, """
-                    SELECT
-                        rental_id,
-                        client_id,
-                        full_name,
-                        car_id,
-                        plate_number,
-                        brand,
-                        model,
-                        date_from,
-                        date_to,
-                        status,
-                        daily_rate_at_booking,
-                        total_amount,
-                        penalty_amount,
-                        deposit_amount
-                    FROM vw_client_reservations
-                    WHERE rental_id = ? AND client_id = ?
-                    """, ps -> {
+            ReservationView v = reads.readFor(clientId, db -> QueryExecutor.one(db, GET_FOR_CLIENT, ps -> {
                 ps.setLong(1, rentalId);
                 ps.setLong(2, clientId);
-            }, JdbcReservationRepository::mapReservationView);
+            }, JdbcReservationRepository::mapReservationView));
 
             if (v == null) throw new DomainException(ErrorCode.NOT_FOUND, "reservation not found");
             return v;
@@ -133,22 +326,54 @@ public final class JdbcReservationRepository implements ReservationRepository {
         }
     }
 
+    @Override
+    public List<BookedRange> listActiveRanges(LocalDate endingAfter) {
+        try {
+            return QueryExecutor.list(ds, ACTIVE_RANGES, ps -> ps.setDate(1, Date.valueOf(endingAfter)),
+                    JdbcReservationRepository::mapBookedRange);
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    @Override
+    public List<BookedRange> listCarRanges(long carId, LocalDate dateFrom, LocalDate dateTo) {
+        try {
+            return reads.read(db -> QueryExecutor.list(db, CAR_RANGES, ps -> {
+                ps.setLong(1, carId);
+                ps.setDate(2, Date.valueOf(dateFrom));
+                ps.setDate(3, Date.valueOf(dateTo));
+            }, JdbcReservationRepository::mapBookedRange));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
     private static ReservationView mapReservationView(ResultSet rs) throws SQLException {
         return new ReservationView(
-                rs.getLong("rental_id"),
-                rs.getLong("client_id"),
-                rs.getString("full_name"),
-                rs.getLong("car_id"),
-                rs.getString("plate_number"),
-                rs.getString("brand"),
-                rs.getString("model"),
-                rs.getDate("date_from").toLocalDate(),
-                rs.getDate("date_to").toLocalDate(),
-                rs.getString("status"),
-                rs.getBigDecimal("daily_rate_at_booking"),
-                rs.getBigDecimal("total_amount"),
-                rs.getBigDecimal("penalty_amount"),
-                rs.getBigDecimal("deposit_amount")
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getString(3),
+                rs.getLong(4),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getString(7),
+                rs.getDate(8).toLocalDate(),
+                rs.getDate(9).toLocalDate(),
+                rs.getString(10),
+                rs.getBigDecimal(11),
+                rs.getBigDecimal(12),
+                rs.getBigDecimal(13),
+                rs.getBigDecimal(14)
+        );
+    }
+
+    private static BookedRange mapBookedRange(ResultSet rs) throws SQLException {
+        return new BookedRange(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getDate(3).toLocalDate(),
+                rs.getDate(4).toLocalDate()
         );
     }
 }
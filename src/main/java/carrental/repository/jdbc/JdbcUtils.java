@@ -14,6 +14,28 @@ public final class JdbcUtils {
         void accept(T t) throws SQLException;
     }
 
+    public interface SqlFunction<T, R> {
+        R apply(T t) throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} on one connection inside a transaction. The work decides the outcome
+     * by calling {@link Connection#commit()} or {@link Connection#rollback()}; anything left
+     * open, and every failure, is rolled back.
+     */
+    public static <T> T inTransaction(DataSource ds, SqlFunction<Connection, T> work) throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                return work.apply(c);
+            } finally {
+                c.rollback();
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
     public static <T> T queryOne(DataSource ds, String sql, SqlConsumer<PreparedStatement> binder, RowMapper<T> mapper) throws SQLException {
         try (Connection c = ds.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -37,6 +59,31 @@ public final class JdbcUtils {
         }
     }
 
+    /**
+     * Streams the result to {@code sink} row by row. The query runs inside a transaction
+     * so PgJDBC can use a server-side cursor and keep only {@code fetchSize} rows in memory.
+     */
+    public static <T> void queryEach(DataSource ds, String sql, SqlConsumer<PreparedStatement> binder, int fetchSize,
+                                     RowMapper<T> mapper, java.util.function.Consumer<? super T> sink) throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setFetchSize(fetchSize);
+                if (binder != null) binder.accept(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) sink.accept(mapper.map(rs));
+                }
+                c.commit();
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
     public static int exec(DataSource ds, String sql, SqlConsumer<PreparedStatement> binder) throws SQLException {
         try (Connection c = ds.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -0,0 +1,170 @@
+package carrental.repository.jdbc;
+
+import carrental.domain.error.DomainException;
+import carrental.domain.model.ReservationCursor;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Opens pool connections up front and runs the repositories' hot read statements on every one
+ * of them with arguments that match nothing, so each physical connection already holds the
+ * server-side prepared statements (and plpgsql plans) before the first real request arrives.
+ * The statements are the repositories' own: they run through real repository instances bound
+ * to one connection at a time. Write statements run inside a transaction that is rolled back,
+ * so a warm-up never changes data even if an argument happens to match a row.
+ */
+public final class JdbcWarmup {
+    private JdbcWarmup() {}
+
+    /**
+     * Holds {@code connections} connections at once, which makes the pool open them, and runs
+     * every hot statement on each enough times to pass PgJDBC's {@code prepareThreshold}.
+     * Returns the number of connections warmed.
+     */
+    public static int prewarm(DataSource ds, int connections, int prepareThreshold) throws SQLException {
+        return prewarm(ds, connections, prepareThreshold, true);
+    }
+
+    /**
+     * Same for a read replica: only the statements {@link ReplicaRouting} sends there, since a
+     * standby rejects the write statements.
+     */
+    public static int prewarmReplica(DataSource replica, int connections, int prepareThreshold) throws SQLException {
+        return prewarm(replica, connections, prepareThreshold, false);
+    }
+
+    private static int prewarm(DataSource ds, int connections, int prepareThreshold, boolean writes)
+            throws SQLException {
+        int executions = Math.max(1, prepareThreshold) + 1;
+        List<Connection> held = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                held.add(ds.getConnection());
+            }
+            for (Connection c : held) {
+                warm(c, executions, writes);
+            }
+            return held.size();
+        } finally {
+            for (Connection c : held) {
+                c.close();
+            }
+        }
+    }
+
+    private static void warm(Connection c, int executions, boolean writes) throws SQLException {
+        DataSource pinned = new PinnedDataSource(c);
+        JdbcReservationRepository reservations = new JdbcReservationRepository(pinned);
+        JdbcCarRepository cars = new JdbcCarRepository(pinned);
+        JdbcClientRepository clients = new JdbcClientRepository(pinned);
+        JdbcRecoveryTokenRepository recovery = new JdbcRecoveryTokenRepository(pinned);
+        LocalDate today = LocalDate.now();
+
+        for (int i = 0; i < executions; i++) {
+            reservations.listByClient(-1);
+            reservations.listByClientAfter(-1, new ReservationCursor(today, Long.MAX_VALUE), 1);
+            reservations.listCarRanges(-1, today, today.plusDays(1));
+            ignoreDomainError(() -> reservations.getByIdForClient(-1, -1));
+            ignoreDomainError(() -> cars.getById(-1));
+            if (!writes) continue;
+            reservations.isClientAllowed(-1);
+            rolledBack(c, () -> reservations.updateStatus(-1, -1, "canceled"));
+            rolledBack(c, () -> reservations.createConfirmed(-1, -1, today, today.plusDays(1)));
+            ignoreDomainError(() -> clients.getByLogin(""));
+            clients.existsEmail("");
+            recovery.matches("", "");
+        }
+    }
+
+    /** One transaction per call: a failing statement aborts it, and the next call needs a fresh one. */
+    private static void rolledBack(Connection c, Runnable call) throws SQLException {
+        c.setAutoCommit(false);
+        try {
+            ignoreDomainError(call);
+        } finally {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+    }
+
+    private static void ignoreDomainError(Runnable call) {
+        try {
+            call.run();
+        } catch (DomainException expected) {
+            // the arguments match nothing on purpose
+        }
+    }
+
+    /**
+     * Hands out the same connection on every call and ignores {@code close()}, so repository
+     * code that opens and closes a connection per call keeps running on one physical connection.
+     */
+    private static final class PinnedDataSource implements DataSource {
+        private final Connection connection;
+
+        PinnedDataSource(Connection target) {
+            this.connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (p, m, args) -> {
+                        if (m.getName().equals("close")) return null;
+                        try {
+                            return m.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        @Override
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return connection;
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("not a wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -27,6 +27,9 @@ public final class PostgresErrorMapper {
             return new DomainException(ErrorCode.VALIDATION, "validation error", e);
         }
         if ("P0001".equals(state)) {
+            if (msg.contains("client blocked")) {
+                return new DomainException(ErrorCode.CLIENT_BLOCKED, "client blocked", e);
+            }
             if (msg.contains("not available") || msg.contains("unavailable")) {
                 return new DomainException(ErrorCode.CONFLICT, "car is not available for selected dates", e);
             }
@@ -0,0 +1,220 @@
+package carrental.repository.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SQL registered once with {@link #register} on prepared statements that stay open for
+ * the life of each physical connection, where {@link JdbcUtils} prepares and closes a statement
+ * on every call. With PgJDBC's {@code prepareThreshold} reached, each one is a named
+ * server-side statement, so a call costs a bind and an execute.
+ * <p>
+ * The statements are prepared on the physical connection behind the pool's proxy, so the pool
+ * neither tracks nor closes them. Only the thread that has the connection borrowed uses them.
+ * Entries for connections the pool has since closed are dropped whenever a new connection
+ * shows up. A statement is closed and prepared again on the next call only when the failure
+ * leaves it unusable, so booking conflicts keep their server-side statement. A
+ * connection-class failure also evicts the connection from a Hikari pool, because the pool
+ * never saw the error.
+ * <p>
+ * The registered SQL fixes the column order, so row mappers read columns by position.
+ */
+public final class QueryExecutor {
+    private static final AtomicInteger SLOTS = new AtomicInteger();
+    private static final ConcurrentHashMap<Connection, PreparedStatement[]> OPEN = new ConcurrentHashMap<>();
+    private static final JdbcUtils.SqlConsumer<PreparedStatement> NO_PARAMS = ps -> {};
+
+    private QueryExecutor() {}
+
+    /** A registered statement; {@code slot} is its index in every connection's statement array. */
+    public static final class Query {
+        private final String name;
+        private final String sql;
+        private final int slot;
+
+        private Query(String name, String sql, int slot) {
+            this.name = name;
+            this.sql = sql;
+            this.slot = slot;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String sql() {
+            return sql;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** Meant for {@code static final} fields: every registration takes a slot on every connection. */
+    public static Query register(String name, String sql) {
+        return new Query(name, sql, SLOTS.getAndIncrement());
+    }
+
+    /** Physical connections with open statements. */
+    public static int connections() {
+        return OPEN.size();
+    }
+
+    /** For the common single-id lookup: binds {@code id} as the only parameter without a capturing lambda. */
+    public static <T> T one(DataSource ds, Query q, long id, JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        return one(ds, q, null, id, mapper);
+    }
+
+    public static <T> T one(DataSource ds, Query q, JdbcUtils.SqlConsumer<PreparedStatement> binder,
+                            JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        return one(ds, q, binder, 0, mapper);
+    }
+
+    public static <T> List<T> list(DataSource ds, Query q, JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        return list(ds, q, NO_PARAMS, 0, mapper);
+    }
+
+    public static <T> List<T> list(DataSource ds, Query q, long id, JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        return list(ds, q, null, id, mapper);
+    }
+
+    public static <T> List<T> list(DataSource ds, Query q, JdbcUtils.SqlConsumer<PreparedStatement> binder,
+                                   JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        return list(ds, q, binder, 0, mapper);
+    }
+
+    /** Returns the update count. */
+    public static int update(DataSource ds, Query q, JdbcUtils.SqlConsumer<PreparedStatement> binder) throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            Connection physical = c.unwrap(Connection.class);
+            try {
+                PreparedStatement ps = statement(physical, q);
+                if (binder != null) binder.accept(ps);
+                return ps.executeUpdate();
+            } catch (SQLException e) {
+                throw failed(ds, c, physical, q, e);
+            }
+        }
+    }
+
+    /** {@code binder == null} binds {@code id} as parameter 1. */
+    private static <T> T one(DataSource ds, Query q, JdbcUtils.SqlConsumer<PreparedStatement> binder, long id,
+                             JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            Connection physical = c.unwrap(Connection.class);
+            try {
+                PreparedStatement ps = statement(physical, q);
+                bind(ps, binder, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? mapper.map(rs) : null;
+                }
+            } catch (SQLException e) {
+                throw failed(ds, c, physical, q, e);
+            }
+        }
+    }
+
+    private static <T> List<T> list(DataSource ds, Query q, JdbcUtils.SqlConsumer<PreparedStatement> binder, long id,
+                                    JdbcUtils.RowMapper<T> mapper) throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            Connection physical = c.unwrap(Connection.class);
+            try {
+                PreparedStatement ps = statement(physical, q);
+                bind(ps, binder, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<T> out = new ArrayList<>();
+                    while (rs.next()) out.add(mapper.map(rs));
+                    return out;
+                }
+            } catch (SQLException e) {
+                throw failed(ds, c, physical, q, e);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, JdbcUtils.SqlConsumer<PreparedStatement> binder, long id)
+            throws SQLException {
+        if (binder == null) {
+            ps.setLong(1, id);
+        } else {
+            binder.accept(ps);
+        }
+    }
+
+    private static PreparedStatement statement(Connection physical, Query q) throws SQLException {
+        PreparedStatement[] open = OPEN.get(physical);
+        if (open == null) {
+            dropClosed();
+            open = new PreparedStatement[SLOTS.get()];
+            OPEN.put(physical, open);
+        } else if (open.length <= q.slot) {
+            open = Arrays.copyOf(open, SLOTS.get());
+            OPEN.put(physical, open);
+        }
+        PreparedStatement ps = open[q.slot];
+        if (ps == null) {
+            ps = physical.prepareStatement(q.sql);
+            open[q.slot] = ps;
+        }
+        return ps;
+    }
+
+    /** Physical connections are opened rarely (pool start, max lifetime, failures), so a full scan is cheap. */
+    private static void dropClosed() {
+        OPEN.keySet().removeIf(c -> {
+            try {
+                return c.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        });
+    }
+
+    private static SQLException failed(DataSource ds, Connection pooled, Connection physical, Query q, SQLException e) {
+        String state = e.getSQLState();
+        boolean connectionLost = state != null && (state.startsWith("08") || state.startsWith("57P"));
+        PreparedStatement[] open = OPEN.get(physical);
+        if ((connectionLost || invalidatesStatement(state))
+                && open != null && q.slot < open.length && open[q.slot] != null) {
+            try {
+                open[q.slot].close();
+            } catch (SQLException ignored) {
+                // the connection may be gone already
+            }
+            open[q.slot] = null;
+        }
+        if (connectionLost) {
+            OPEN.remove(physical);
+            try {
+                if (ds.isWrapperFor(HikariDataSource.class)) {
+                    ds.unwrap(HikariDataSource.class).evictConnection(pooled);
+                }
+            } catch (SQLException ignored) {
+                // not a Hikari pool; nothing to tell
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Errors raised by the statement's data (conflicts, check failures, {@code RAISE} in the
+     * booking functions) leave it usable; only these mean the server-side statement itself is
+     * gone or stale: {@code 26000} unknown prepared statement, {@code 0A000} "cached plan must not
+     * change result type" after DDL, and driver-side errors that carry no SQLState.
+     */
+    private static boolean invalidatesStatement(String state) {
+        return state == null || "26000".equals(state) || "0A000".equals(state);
+    }
+}
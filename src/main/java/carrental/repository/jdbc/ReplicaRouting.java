@@ -0,0 +1,142 @@
+package carrental.repository.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides where a read-only query runs. Without a replica everything goes to the primary.
+ * With one, reads go to the replica except:
+ * <ul>
+ *   <li>reads on behalf of a client that wrote within {@code stickyMs} stay on the primary, so
+ *       a booking or cancellation is visible to the same client straight away;</li>
+ *   <li>a read that fails on the replica with a connection-class error (including not getting
+ *       a connection at all) is run again on the primary, and the replica is skipped for
+ *       {@code retryMs}.</li>
+ * </ul>
+ * Recent writers are tracked per hashed stripe, like the rate limiter: memory is fixed, and a
+ * colliding client just reads from the primary a little longer.
+ */
+public final class ReplicaRouting {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouting.class);
+
+    private static final int STRIPES = 1 << 16;
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long stickyNanos;
+    private final long retryNanos;
+    private final AtomicLongArray lastWrite;
+    private final long origin = System.nanoTime();
+    private volatile long replicaDownUntil;
+
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong stickyReads = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReplicaRouting(DataSource primary, DataSource replica, long stickyMs, long retryMs) {
+        this.primary = primary;
+        this.replica = replica;
+        this.stickyNanos = stickyMs * 1_000_000L;
+        this.retryNanos = retryMs * 1_000_000L;
+        this.lastWrite = replica == null ? null : new AtomicLongArray(STRIPES);
+    }
+
+    public static ReplicaRouting primaryOnly(DataSource primary) {
+        return new ReplicaRouting(primary, null, 0, 0);
+    }
+
+    public boolean hasReplica() {
+        return replica != null;
+    }
+
+    /** Reads answered by the replica. */
+    public long replicaReads() {
+        return replicaReads.get();
+    }
+
+    /** Reads kept on the primary because the client wrote recently. */
+    public long stickyReads() {
+        return stickyReads.get();
+    }
+
+    /** Reads sent to the primary because the replica failed or is being skipped. */
+    public long fallbacks() {
+        return fallbacks.get();
+    }
+
+    /** Records that {@code clientId} just wrote, so its reads stay on the primary for a while. */
+    void wrote(long clientId) {
+        if (lastWrite != null) lastWrite.set(stripe(clientId), now());
+    }
+
+    /** A read that does not depend on any client's own recent writes. */
+    <T> T read(JdbcUtils.SqlFunction<DataSource, T> query) throws SQLException {
+        if (replica == null) return query.apply(primary);
+        return onReplica(query);
+    }
+
+    /** A read of {@code clientId}'s own data. */
+    <T> T readFor(long clientId, JdbcUtils.SqlFunction<DataSource, T> query) throws SQLException {
+        if (replica == null) return query.apply(primary);
+        long wrote = lastWrite.get(stripe(clientId));
+        if (wrote != 0 && now() - wrote < stickyNanos) {
+            stickyReads.incrementAndGet();
+            return query.apply(primary);
+        }
+        return onReplica(query);
+    }
+
+    private <T> T onReplica(JdbcUtils.SqlFunction<DataSource, T> query) throws SQLException {
+        if (now() < replicaDownUntil) {
+            fallbacks.incrementAndGet();
+            return query.apply(primary);
+        }
+        T out;
+        try {
+            out = query.apply(replica);
+        } catch (SQLException e) {
+            if (!replicaUnavailable(e)) throw e;
+            if (now() >= replicaDownUntil) {
+                log.warn("read replica unavailable, reading from the primary for {} ms: {}",
+                        retryNanos / 1_000_000, e.toString());
+            }
+            replicaDownUntil = now() + retryNanos;
+            fallbacks.incrementAndGet();
+            return query.apply(primary);
+        }
+        replicaReads.incrementAndGet();
+        return out;
+    }
+
+    /**
+     * Connection failures (class 08, the pool's timeouts), server shutdown (57P01-57P03), and
+     * hot-standby query cancellations (40001), none of which say anything about the query.
+     */
+    private static boolean replicaUnavailable(SQLException e) {
+        if (e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("08") || state.startsWith("57P") || state.equals("40001"));
+    }
+
+    private long now() {
+        // never 0, which marks a stripe nobody wrote to
+        return System.nanoTime() - origin + 1;
+    }
+
+    private static int stripe(long clientId) {
+        long h = clientId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 48) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,178 @@
+package carrental.repository.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * The reservation shards and the rules for finding data on them. Shard {@code i} of {@code N}
+ * holds the cars with {@code car_id mod N = i} together with their reservations, which keeps
+ * {@code reservations_no_overlap} a single-database constraint, and hands out rental ids with
+ * {@code (rental_id - 1) mod N = i}, so a rental id alone names its shard. Queries that span
+ * shards run on all of them at once, on virtual threads.
+ */
+public final class ShardSet implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ShardSet.class);
+
+    private final List<DataSource> shards;
+    private final ExecutorService fanOut;
+
+    public ShardSet(List<? extends DataSource> shards) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("no shards");
+        this.shards = List.copyOf(shards);
+        this.fanOut = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("shard-fanout-", 0).factory());
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    DataSource get(int shard) {
+        return shards.get(shard);
+    }
+
+    int forCar(long carId) {
+        return Math.floorMod(carId, shards.size());
+    }
+
+    int forRental(long rentalId) {
+        return Math.floorMod(rentalId - 1, shards.size());
+    }
+
+    /**
+     * Runs {@code query} for every shard in parallel (the last one on the calling thread) and
+     * returns the results in shard order. The first failure is rethrown once all have finished.
+     */
+    <T> List<T> all(IntFunction<T> query) {
+        int n = shards.size();
+        List<Future<T>> futures = new ArrayList<>(n - 1);
+        for (int i = 0; i < n - 1; i++) {
+            int shard = i;
+            futures.add(fanOut.submit(() -> query.apply(shard)));
+        }
+        RuntimeException failure = null;
+        T last = null;
+        try {
+            last = query.apply(n - 1);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        List<T> out = new ArrayList<>(n);
+        boolean interrupted = false;
+        for (Future<T> f : futures) {
+            try {
+                while (true) {
+                    try {
+                        out.add(f.get());
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                out.add(null);
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+        out.add(last);
+        return out;
+    }
+
+    /**
+     * Adapts a migrated database to act as shard {@code index} of {@code count}; safe to run on
+     * every start. Clients stay in the main database, so the foreign key to {@code clients} is
+     * dropped and {@code vw_client_reservations} joins clients optionally ({@code full_name}
+     * is filled in from the main database). The rental id identity is given a stride of
+     * {@code count}. Cars or reservations that belong to another shard fail the start.
+     */
+    public static void prepare(DataSource shard, int index, int count) throws SQLException {
+        JdbcUtils.inTransaction(shard, c -> {
+            try (var st = c.createStatement()) {
+                st.execute("ALTER TABLE reservations DROP CONSTRAINT IF EXISTS reservations_clients_fk");
+                st.execute("""
+                        CREATE OR REPLACE VIEW vw_client_reservations AS
+                        SELECT
+                          r.rental_id,
+                          r.client_id,
+                          c.full_name,
+                          r.car_id,
+                          car.plate_number,
+                          car.brand,
+                          car.model,
+                          r.date_from,
+                          r.date_to,
+                          r.status,
+                          r.daily_rate_at_booking,
+                          r.total_amount,
+                          r.penalty_amount,
+                          r.deposit_amount
+                        FROM reservations r
+                        LEFT JOIN clients c ON c.client_id = r.client_id
+                        JOIN cars car ON car.car_id = r.car_id
+                        """);
+            }
+
+            long misplaced = count(c, "SELECT COUNT(*) FROM cars WHERE car_id % ? <> ?", count, index)
+                    + count(c, "SELECT COUNT(*) FROM reservations WHERE (rental_id - 1) % ? <> ?", count, index);
+            if (misplaced > 0) {
+                throw new IllegalStateException("shard " + index + " of " + count + " holds " + misplaced
+                        + " cars or reservations that belong to another shard");
+            }
+
+            long increment;
+            long start;
+            try (PreparedStatement ps = c.prepareStatement("""
+                    SELECT s.seqincrement, s.seqstart
+                    FROM pg_sequence s
+                    WHERE s.seqrelid = pg_get_serial_sequence('reservations', 'rental_id')::regclass
+                    """);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                increment = rs.getLong(1);
+                start = rs.getLong(2);
+            }
+            if (increment != count || Math.floorMod(start - 1, count) != index) {
+                long max = count(c, "SELECT COALESCE(MAX(rental_id), 0) FROM reservations");
+                long next = max + 1 + Math.floorMod(index - max, count);
+                try (var st = c.createStatement()) {
+                    st.execute("ALTER TABLE reservations ALTER COLUMN rental_id SET INCREMENT BY " + count
+                            + " SET START WITH " + next + " RESTART WITH " + next);
+                }
+                log.info("shard {} of {}: rental ids continue at {} with stride {}", index, count, next, count);
+            }
+            c.commit();
+            return null;
+        });
+    }
+
+    private static long count(Connection c, String sql, long... params) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setLong(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdown();
+    }
+}
@@ -0,0 +1,49 @@
+package carrental.repository.jdbc;
+
+import carrental.domain.model.Car;
+import carrental.repository.CarRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** Cars spread over a {@link ShardSet}: lookups go to the owning shard, listings gather from all of them. */
+public final class ShardedCarRepository implements CarRepository {
+    private static final Comparator<Car> BY_ID = Comparator.comparingLong(Car::carId);
+
+    private final ShardSet shards;
+    private final JdbcCarRepository[] repos;
+
+    public ShardedCarRepository(ShardSet shards) {
+        this.shards = shards;
+        this.repos = new JdbcCarRepository[shards.size()];
+        for (int i = 0; i < repos.length; i++) {
+            repos[i] = new JdbcCarRepository(shards.get(i));
+        }
+    }
+
+    @Override
+    public List<Car> listAvailable(LocalDate dateFrom, LocalDate dateTo) {
+        return merged(shards.all(i -> repos[i].listAvailable(dateFrom, dateTo)));
+    }
+
+    @Override
+    public Car getById(long id) {
+        return repos[shards.forCar(id)].getById(id);
+    }
+
+    @Override
+    public List<Car> listAll() {
+        return merged(shards.all(i -> repos[i].listAll()));
+    }
+
+    private static List<Car> merged(List<List<Car>> perShard) {
+        int total = 0;
+        for (List<Car> cars : perShard) total += cars.size();
+        List<Car> out = new ArrayList<>(total);
+        for (List<Car> cars : perShard) out.addAll(cars);
+        out.sort(BY_ID);
+        return out;
+    }
+}
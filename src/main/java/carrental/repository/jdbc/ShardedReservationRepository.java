@@ -0,0 +1,398 @@
+package carrental.repository.jdbc;
+
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookedRange;
+import carrental.domain.model.BookingRequest;
+import carrental.domain.model.ReservationCursor;
+import carrental.domain.model.ReservationView;
+import carrental.domain.model.StatusChange;
+import carrental.repository.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reservations spread over a {@link ShardSet}. Anything about one car or one rental goes to the
+ * owning shard; a client's listings gather from every shard and merge in the API order
+ * ({@code date_from DESC, rental_id DESC}). Clients live in the main database, which supplies
+ * {@code full_name} and serializes a client's bookings: the one-active-booking rule spans shards,
+ * so booking locks the client row there, checks every shard, then inserts on the car's shard.
+ * <p>
+ * A batch that spans shards is not one transaction. Each shard books its part; if an
+ * all-or-nothing batch fails on any shard, or any shard call fails outright, the bookings the
+ * other shards made are deleted again. A delete that keeps failing is recorded in
+ * {@code pending_shard_undos} in the main database and retried in the background, and the
+ * batch fails with {@code INTERNAL} rather than as a clean conflict, since bookings remain.
+ */
+public final class ShardedReservationRepository implements ReservationRepository, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ShardedReservationRepository.class);
+
+    private static final int STREAM_PAGE = 500;
+    private static final int UNDO_ATTEMPTS = 3;
+    private static final long UNDO_BACKOFF_MS = 100;
+    private static final int UNDO_RETRY_BATCH = 100;
+    private static final Comparator<ReservationView> API_ORDER = (a, b) -> {
+        int c = b.dateFrom().compareTo(a.dateFrom());
+        return c != 0 ? c : Long.compare(b.rentalId(), a.rentalId());
+    };
+
+    private static final QueryExecutor.Query CLIENT_NAME = QueryExecutor.register("clients.fullName",
+            "SELECT full_name FROM clients WHERE client_id = ?");
+    private static final QueryExecutor.Query DELETE_BOOKED = QueryExecutor.register("reservations.deleteBooked",
+            "DELETE FROM reservations WHERE rental_id = ANY(?) AND client_id = ?");
+    /** Runs on the connection holding the client lock, so it is not a pooled {@link QueryExecutor} query. */
+    private static final String RECORD_UNDO =
+            "INSERT INTO pending_shard_undos (shard, client_id, rental_ids) VALUES (?,?,?)";
+    private static final QueryExecutor.Query PENDING_UNDOS = QueryExecutor.register("shardUndos.pending",
+            "SELECT undo_id, shard, client_id, rental_ids FROM pending_shard_undos ORDER BY undo_id LIMIT ?");
+    private static final QueryExecutor.Query DONE_UNDO = QueryExecutor.register("shardUndos.done",
+            "DELETE FROM pending_shard_undos WHERE undo_id = ?");
+
+    private final DataSource directory;
+    private final ShardSet shards;
+    private final JdbcReservationRepository[] repos;
+    private ScheduledExecutorService undoRetry;
+
+    /** {@code directory} is the main database, the one holding {@code clients}. */
+    public ShardedReservationRepository(DataSource directory, ShardSet shards) {
+        this.directory = directory;
+        this.shards = shards;
+        this.repos = new JdbcReservationRepository[shards.size()];
+        for (int i = 0; i < repos.length; i++) {
+            repos[i] = new JdbcReservationRepository(shards.get(i));
+        }
+    }
+
+    @Override
+    public boolean isClientAllowed(long clientId) {
+        for (boolean allowed : shards.all(i -> repos[i].isClientAllowed(clientId))) {
+            if (!allowed) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public long create(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
+        return repos[shards.forCar(carId)].create(clientId, carId, dateFrom, dateTo);
+    }
+
+    @Override
+    public ReservationView createConfirmed(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
+        return withClientLocked(clientId, (locked, name) -> {
+            if (!isClientAllowed(clientId)) throw new DomainException(ErrorCode.CLIENT_BLOCKED, "client blocked");
+            return named(repos[shards.forCar(carId)].createConfirmed(clientId, carId, dateFrom, dateTo), name);
+        });
+    }
+
+    @Override
+    public List<BatchItemResult> createConfirmedBatch(long clientId, List<BookingRequest> items, boolean atomic) {
+        return withClientLocked(clientId, (locked, name) -> {
+            if (!isClientAllowed(clientId)) throw new DomainException(ErrorCode.CLIENT_BLOCKED, "client blocked");
+
+            // Original item positions per shard.
+            int n = shards.size();
+            List<List<Integer>> positions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) positions.add(new ArrayList<>());
+            for (int i = 0; i < items.size(); i++) {
+                positions.get(shards.forCar(items.get(i).carId())).add(i);
+            }
+
+            RuntimeException[] failures = new RuntimeException[n];
+            List<List<BatchItemResult>> perShard = shards.all(s -> {
+                List<Integer> pos = positions.get(s);
+                if (pos.isEmpty()) return List.of();
+                List<BookingRequest> part = new ArrayList<>(pos.size());
+                for (int p : pos) part.add(items.get(p));
+                try {
+                    return repos[s].createConfirmedBatch(clientId, part, atomic);
+                } catch (RuntimeException e) {
+                    failures[s] = e;
+                    return List.of();
+                }
+            });
+
+            RuntimeException failure = null;
+            boolean anyItemFailed = false;
+            for (int s = 0; s < n; s++) {
+                if (failures[s] != null && failure == null) failure = failures[s];
+                for (BatchItemResult r : perShard.get(s)) anyItemFailed |= r.error() != null;
+            }
+            if (failure != null || (atomic && anyItemFailed)) {
+                boolean undone = true;
+                for (int s = 0; s < n; s++) {
+                    undone &= undo(locked, s, clientId, perShard.get(s));
+                }
+                if (!undone) {
+                    // The throw below rolls the lock transaction back, which would drop the recorded undos.
+                    locked.commit();
+                    throw new DomainException(ErrorCode.INTERNAL,
+                            "batch could not be rolled back on every shard; remaining bookings will be removed");
+                }
+                if (failure != null) throw failure;
+            }
+
+            BatchItemResult[] out = new BatchItemResult[items.size()];
+            for (int s = 0; s < n; s++) {
+                List<Integer> pos = positions.get(s);
+                for (BatchItemResult r : perShard.get(s)) {
+                    int index = pos.get(r.index());
+                    if (r.reservation() != null && (atomic && anyItemFailed)) {
+                        out[index] = new BatchItemResult(index, null, null, null);
+                    } else {
+                        out[index] = new BatchItemResult(index, named(r.reservation(), name), r.error(), r.message());
+                    }
+                }
+            }
+            return Arrays.asList(out);
+        });
+    }
+
+    @Override
+    public StatusChange updateStatus(long rentalId, long clientId, String status) {
+        return repos[shards.forRental(rentalId)].updateStatus(rentalId, clientId, status);
+    }
+
+    @Override
+    public List<ReservationView> listByClient(long clientId) {
+        return named(merged(shards.all(i -> repos[i].listByClient(clientId)), Integer.MAX_VALUE), clientId);
+    }
+
+    @Override
+    public List<ReservationView> listByClientAfter(long clientId, ReservationCursor after, int limit) {
+        return named(merged(shards.all(i -> repos[i].listByClientAfter(clientId, after, limit)), limit), clientId);
+    }
+
+    /**
+     * Merges page by page: each shard is read {@value #STREAM_PAGE} rows at a time through the
+     * keyset cursor, so memory stays bounded by shards times page size.
+     */
+    @Override
+    public void streamByClient(long clientId, Consumer<ReservationView> sink) {
+        int n = shards.size();
+        List<List<ReservationView>> pages = new ArrayList<>(shards.all(i -> repos[i].listByClientAfter(clientId, null, STREAM_PAGE)));
+        int[] next = new int[n];
+        String name = null;
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (next[i] < pages.get(i).size()
+                        && (best < 0 || API_ORDER.compare(pages.get(i).get(next[i]), pages.get(best).get(next[best])) < 0)) {
+                    best = i;
+                }
+            }
+            if (best < 0) return;
+            ReservationView row = pages.get(best).get(next[best]++);
+            if (name == null) name = clientName(clientId);
+            sink.accept(named(row, name));
+            if (next[best] == STREAM_PAGE) {
+                pages.set(best, repos[best].listByClientAfter(clientId,
+                        new ReservationCursor(row.dateFrom(), row.rentalId()), STREAM_PAGE));
+                next[best] = 0;
+            }
+        }
+    }
+
+    @Override
+    public ReservationView getByIdForClient(long rentalId, long clientId) {
+        ReservationView v = repos[shards.forRental(rentalId)].getByIdForClient(rentalId, clientId);
+        return named(v, clientName(clientId));
+    }
+
+    @Override
+    public List<BookedRange> listActiveRanges(LocalDate endingAfter) {
+        List<BookedRange> out = new ArrayList<>();
+        for (List<BookedRange> ranges : shards.all(i -> repos[i].listActiveRanges(endingAfter))) {
+            out.addAll(ranges);
+        }
+        return out;
+    }
+
+    @Override
+    public List<BookedRange> listCarRanges(long carId, LocalDate dateFrom, LocalDate dateTo) {
+        return repos[shards.forCar(carId)].listCarRanges(carId, dateFrom, dateTo);
+    }
+
+    private interface ClientWork<T> {
+        T run(Connection locked, String fullName) throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} while holding the client's row lock in the main database. Main-database
+     * writes inside {@code work} go through {@code locked}: taking a second connection from the
+     * pool while holding this one can deadlock a saturated pool.
+     */
+    private <T> T withClientLocked(long clientId, ClientWork<T> work) {
+        try {
+            return JdbcUtils.inTransaction(directory, c -> {
+                String name;
+                try (PreparedStatement ps = c.prepareStatement("SELECT full_name FROM clients WHERE client_id = ? FOR UPDATE")) {
+                    ps.setLong(1, clientId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        // What the foreign key reported before sharding.
+                        if (!rs.next()) throw new DomainException(ErrorCode.VALIDATION, "validation error");
+                        name = rs.getString(1);
+                    }
+                }
+                T out = work.run(c, name);
+                c.commit();
+                return out;
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    /**
+     * Deletes the bookings {@code results} made on {@code shard}, retrying a few times. If that
+     * keeps failing, records them in {@code pending_shard_undos} on {@code locked} (uncommitted)
+     * and returns {@code false}.
+     */
+    private boolean undo(Connection locked, int shard, long clientId, List<BatchItemResult> results) {
+        List<Long> ids = new ArrayList<>();
+        for (BatchItemResult r : results) {
+            if (r.reservation() != null) ids.add(r.reservation().rentalId());
+        }
+        if (ids.isEmpty()) return true;
+        Long[] rentalIds = ids.toArray(new Long[0]);
+
+        RuntimeException last = null;
+        for (int attempt = 1; attempt <= UNDO_ATTEMPTS; attempt++) {
+            try {
+                deleteBooked(shard, clientId, rentalIds);
+                return true;
+            } catch (RuntimeException e) {
+                last = e;
+            }
+            if (attempt < UNDO_ATTEMPTS) {
+                try {
+                    Thread.sleep(UNDO_BACKOFF_MS * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        try (PreparedStatement ps = locked.prepareStatement(RECORD_UNDO)) {
+            ps.setInt(1, shard);
+            ps.setLong(2, clientId);
+            ps.setArray(3, locked.createArrayOf("bigint", rentalIds));
+            ps.executeUpdate();
+            log.warn("cannot undo batch bookings {} of client {} on shard {}, queued for retry", ids, clientId, shard, last);
+        } catch (SQLException | RuntimeException e) {
+            log.error("cannot undo batch bookings {} of client {} on shard {} nor queue the undo; delete them by hand",
+                    ids, clientId, shard, e);
+        }
+        return false;
+    }
+
+    private void deleteBooked(int shard, long clientId, Long[] rentalIds) {
+        try {
+            QueryExecutor.update(shards.get(shard), DELETE_BOOKED, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", rentalIds));
+                ps.setLong(2, clientId);
+            });
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    /** Retries the undos recorded in {@code pending_shard_undos}; returns how many completed. */
+    public int retryPendingUndos() {
+        List<PendingUndo> pending;
+        try {
+            pending = QueryExecutor.list(directory, PENDING_UNDOS, ps -> ps.setInt(1, UNDO_RETRY_BATCH),
+                    rs -> new PendingUndo(rs.getLong(1), rs.getInt(2), rs.getLong(3), (Long[]) rs.getArray(4).getArray()));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+        int done = 0;
+        for (PendingUndo u : pending) {
+            if (u.shard >= shards.size()) {
+                log.error("pending undo {} names shard {} but only {} are configured", u.undoId, u.shard, shards.size());
+                continue;
+            }
+            try {
+                deleteBooked(u.shard, u.clientId, u.rentalIds);
+                QueryExecutor.update(directory, DONE_UNDO, ps -> ps.setLong(1, u.undoId));
+                log.info("undid batch bookings {} of client {} on shard {}", Arrays.toString(u.rentalIds), u.clientId, u.shard);
+                done++;
+            } catch (SQLException | RuntimeException e) {
+                log.warn("pending undo {} on shard {} failed again", u.undoId, u.shard, e);
+            }
+        }
+        return done;
+    }
+
+    public synchronized void scheduleUndoRetry(long periodSeconds) {
+        if (periodSeconds <= 0 || undoRetry != null) return;
+        undoRetry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shard-undo-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        undoRetry.scheduleWithFixedDelay(() -> {
+            try {
+                retryPendingUndos();
+            } catch (RuntimeException e) {
+                log.warn("pending shard undo retry failed", e);
+            }
+        }, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (undoRetry != null) {
+            undoRetry.shutdownNow();
+            undoRetry = null;
+        }
+    }
+
+    private record PendingUndo(long undoId, int shard, long clientId, Long[] rentalIds) {
+    }
+
+    private String clientName(long clientId) {
+        try {
+            return QueryExecutor.one(directory, CLIENT_NAME, clientId, rs -> rs.getString(1));
+        } catch (SQLException e) {
+            throw PostgresErrorMapper.map(e);
+        }
+    }
+
+    private static List<ReservationView> merged(List<List<ReservationView>> perShard, int limit) {
+        List<ReservationView> out = new ArrayList<>();
+        for (List<ReservationView> rows : perShard) out.addAll(rows);
+        out.sort(API_ORDER);
+        return out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+    }
+
+    private List<ReservationView> named(List<ReservationView> rows, long clientId) {
+        if (rows.isEmpty()) return rows;
+        String name = clientName(clientId);
+        rows.replaceAll(v -> named(v, name));
+        return rows;
+    }
+
+    private static ReservationView named(ReservationView v, String fullName) {
+        if (v == null) return null;
+        return new ReservationView(v.rentalId(), v.clientId(), fullName, v.carId(), v.plateNumber(), v.brand(),
+                v.model(), v.dateFrom(), v.dateTo(), v.status(), v.dailyRateAtBooking(), v.totalAmount(),
+                v.penaltyAmount(), v.depositAmount());
+    }
+}
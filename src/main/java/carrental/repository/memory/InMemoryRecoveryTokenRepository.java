@@ -0,0 +1,41 @@
+package carrental.repository.memory;
+
+import carrental.cache.BoundedCache;
+import carrental.repository.RecoveryTokenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+
+/**
+ * Single-node recovery token store. Holds at most {@code maxTokens} entries; once full,
+ * the least recently issued tokens are dropped, so a flood of requests cannot grow it.
+ */
+public final class InMemoryRecoveryTokenRepository implements RecoveryTokenRepository {
+    private final BoundedCache<String, String> tokens;
+
+    public InMemoryRecoveryTokenRepository(int maxTokens) {
+        this.tokens = new BoundedCache<>(maxTokens, 0);
+    }
+
+    @Override
+    public void save(String email, String token, Instant expiresAt) {
+        tokens.put(email, token, expiresAt.toEpochMilli());
+    }
+
+    @Override
+    public boolean matches(String email, String token) {
+        String stored = tokens.get(email);
+        return stored != null && MessageDigest.isEqual(
+                stored.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int deleteExpired() {
+        return tokens.removeExpired();
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+}
@@ -2,34 +2,40 @@ package carrental.service;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
-import org.mindrot.jbcrypt.BCrypt;
 import carrental.domain.error.DomainException;
 import carrental.domain.error.ErrorCode;
 import carrental.domain.model.Client;
 import carrental.domain.model.ClientWithHash;
 import carrental.repository.ClientRepository;
+import carrental.repository.RecoveryTokenRepository;
 
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.HexFormat;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public final class AuthService {
+    private static final int RECOVERY_TTL_SECONDS = 15 * 60;
+    private static final int MAX_EMAIL_LENGTH = 255;
+
     private final ClientRepository clients;
+    private final PasswordHasher hasher;
+    private final RecoveryTokenRepository recovery;
     private final String jwtSecret;
-    private final Map<String, RecoveryItem> recovery = new ConcurrentHashMap<>();
     private final SecureRandom rnd = new SecureRandom();
+    /** Runs what follows a hash or check, so the bcrypt pool threads only hash. */
+    private final Executor afterHash = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("auth-", 0).factory());
 
-    private record RecoveryItem(String token, Instant expiresAt) {
-    }
-
-    public AuthService(ClientRepository clients, String jwtSecret) {
+    public AuthService(ClientRepository clients, PasswordHasher hasher, RecoveryTokenRepository recovery, String jwtSecret) {
         this.clients = clients;
+        this.hasher = hasher;
+        this.recovery = recovery;
         this.jwtSecret = jwtSecret;
     }
 
-    public long register(String fullName, String passportData, String login, String password, String email, String phone, String address) {
+    public CompletableFuture<Long> register(String fullName, String passportData, String login, String password, String email, String phone, String address) {
         fullName = trim(fullName);
         passportData = trim(passportData);
         login = trim(login);
@@ -42,12 +48,11 @@ public final class AuthService {
         phone = normalizeOptional(phone);
         address = normalizeOptional(address);
 
-        String hash = BCrypt.hashpw(password, BCrypt.gensalt());
         Client c = new Client(0, fullName, passportData, login, email, phone, address);
-        return clients.create(c, hash);
+        return hasher.hash(password).thenApplyAsync(hash -> clients.create(c, hash), afterHash);
     }
 
-    public String login(String login, String password) {
+    public CompletableFuture<String> login(String login, String password) {
         login = trim(login);
         if (login.isEmpty() || password == null || password.isBlank()) {
             throw new DomainException(ErrorCode.VALIDATION, "validation error");
@@ -60,27 +65,31 @@ public final class AuthService {
             throw new DomainException(ErrorCode.UNAUTHORIZED, "unauthorized");
         }
 
-        if (!BCrypt.checkpw(password, row.passwordHash())) {
-            throw new DomainException(ErrorCode.UNAUTHORIZED, "unauthorized");
-        }
+        return hasher.check(password, row.passwordHash()).thenApplyAsync(ok -> {
+            if (!ok) {
+                throw new DomainException(ErrorCode.UNAUTHORIZED, "unauthorized");
+            }
 
-        Algorithm alg = Algorithm.HMAC256(jwtSecret);
-        Instant now = Instant.now();
-        Instant exp = now.plusSeconds(24 * 3600);
+            Algorithm alg = Algorithm.HMAC256(jwtSecret);
+            Instant now = Instant.now();
+            Instant exp = now.plusSeconds(24 * 3600);
 
-        return JWT.create().withSubject(String.valueOf(row.client().clientId())).withClaim("login", row.client().login()).withIssuedAt(now).withExpiresAt(exp).sign(alg);
+            return JWT.create().withSubject(String.valueOf(row.client().clientId())).withClaim("login", row.client().login()).withIssuedAt(now).withExpiresAt(exp).sign(alg);
+        }, afterHash);
     }
 
     public PasswordRecoveryResult passwordRecovery(String email) {
         email = trim(email);
-        if (email.isEmpty()) throw new DomainException(ErrorCode.VALIDATION, "validation error");
+        if (email.isEmpty() || email.length() > MAX_EMAIL_LENGTH) {
+            throw new DomainException(ErrorCode.VALIDATION, "validation error");
+        }
 
         byte[] b = new byte[16];
         rnd.nextBytes(b);
         String token = HexFormat.of().formatHex(b);
 
-        recovery.put(email, new RecoveryItem(token, Instant.now().plusSeconds(15 * 60)));
-        return new PasswordRecoveryResult(token, 900);
+        recovery.save(email, token, Instant.now().plusSeconds(RECOVERY_TTL_SECONDS));
+        return new PasswordRecoveryResult(token, RECOVERY_TTL_SECONDS);
     }
 
     public record PasswordRecoveryResult(String token, int ttlSec) {
@@ -0,0 +1,399 @@
+package carrental.service;
+
+import carrental.domain.model.BookedRange;
+import carrental.domain.model.Car;
+import carrental.repository.CarRepository;
+import carrental.repository.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of non-canceled bookings per car, used to answer availability
+ * searches without the anti-join over {@code reservations}. Postgres stays the
+ * source of truth: {@code reservations_no_overlap} still rejects conflicting inserts,
+ * and a periodic resync picks up writes made by other instances.
+ *
+ * <p>{@link #version()} is an order-independent hash of the indexed cars and bookings, kept
+ * up to date incrementally. Instances holding the same data report the same version.
+ *
+ * <p>A load reads the database while bookings and cancellations keep arriving. Those made
+ * during the load are recorded and replayed onto the new snapshot before it replaces the old
+ * one, so a write is never lost to a resync that read the database just before it committed.
+ * A resync that finds the car rows changed tells the {@linkplain #addCarsListener cars listeners}.
+ */
+public final class AvailabilityIndex implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityIndex.class);
+
+    private final CarRepository cars;
+    private final ReservationRepository reservations;
+    private volatile State state;
+    private final AtomicLong version = new AtomicLong();
+    /** Guards writes, the swap in {@link #load} and {@link #duringLoad}. */
+    private final Object writeLock = new Object();
+    private final Object loadLock = new Object();
+    /** Writes made since the running load started reading, or {@code null} if none is running. */
+    private List<Write> duringLoad;
+    private volatile long lastModifiedMillis = System.currentTimeMillis();
+    private final List<Runnable> carsListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService resync;
+
+    public AvailabilityIndex(CarRepository cars, ReservationRepository reservations) {
+        this.cars = cars;
+        this.reservations = reservations;
+    }
+
+    public void load() {
+        synchronized (loadLock) {
+            synchronized (writeLock) {
+                duringLoad = new ArrayList<>();
+            }
+            try {
+                loadSnapshot();
+            } finally {
+                synchronized (writeLock) {
+                    duringLoad = null;
+                }
+            }
+        }
+    }
+
+    private void loadSnapshot() {
+        LocalDate horizon = LocalDate.now();
+        List<Car> allCars = List.copyOf(cars.listAll());
+        List<BookedRange> ranges = reservations.listActiveRanges(horizon);
+
+        Map<Long, List<BookedRange>> grouped = new HashMap<>();
+        for (BookedRange r : ranges) {
+            grouped.computeIfAbsent(r.carId(), k -> new ArrayList<>()).add(r);
+        }
+
+        State next = new State(allCars, horizon.toEpochDay());
+        grouped.forEach((carId, list) -> {
+            next.byCar.put(carId, Spans.of(list));
+            for (BookedRange r : list) next.carByRental.put(r.rentalId(), carId);
+        });
+
+        long carsFp = 0;
+        for (Car c : allCars) carsFp += mix(c.hashCode());
+        long fp = carsFp;
+        for (BookedRange r : ranges) fp += mix(r.hashCode());
+        next.carsVersion = carsFp;
+
+        int replayed;
+        boolean carsChanged;
+        synchronized (writeLock) {
+            // Writes committed before the read started are in the snapshot already; replaying
+            // them is a no-op. The rest are applied here, before anyone can see the new state.
+            replayed = duringLoad.size();
+            for (Write w : duringLoad) {
+                fp += w.canceled ? canceled(next, w.rentalId) : booked(next, w.range);
+            }
+            carsChanged = state != null && state.carsVersion != carsFp;
+            state = next;
+            if (version.getAndSet(fp) != fp) lastModifiedMillis = System.currentTimeMillis();
+        }
+        log.info("availability index loaded: {} cars, {} bookings, {} replayed writes",
+                allCars.size(), ranges.size(), replayed);
+        if (carsChanged) {
+            for (Runnable l : carsListeners) l.run();
+        }
+    }
+
+    /** Runs {@code listener} after a resync that found cars added, removed or edited. */
+    public void addCarsListener(Runnable listener) {
+        carsListeners.add(listener);
+    }
+
+    public synchronized void scheduleResync(long periodSeconds) {
+        if (periodSeconds <= 0 || resync != null) return;
+        resync = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-resync");
+            t.setDaemon(true);
+            return t;
+        });
+        resync.scheduleWithFixedDelay(() -> {
+            try {
+                load();
+            } catch (RuntimeException e) {
+                log.warn("availability index resync failed", e);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public boolean covers(LocalDate dateFrom) {
+        State s = state;
+        return s != null && dateFrom.toEpochDay() >= s.horizon;
+    }
+
+    public List<Car> listAvailable(LocalDate dateFrom, LocalDate dateTo) {
+        State s = state;
+        int from = (int) dateFrom.toEpochDay();
+        int to = (int) dateTo.toEpochDay();
+        List<Car> out = new ArrayList<>();
+        for (Car c : s.cars) {
+            Spans spans = s.byCar.get(c.carId());
+            if (spans == null || spans.isFree(from, to)) out.add(c);
+        }
+        return out;
+    }
+
+    public boolean isFree(long carId, LocalDate dateFrom, LocalDate dateTo) {
+        State s = state;
+        if (s == null) throw new IllegalStateException("availability index not loaded");
+        Spans spans = s.byCar.get(carId);
+        return spans == null || spans.isFree((int) dateFrom.toEpochDay(), (int) dateTo.toEpochDay());
+    }
+
+    /**
+     * Free/booked day runs of one car over {@code [dateFrom, dateTo)}, see {@link Spans#runs}.
+     * Only valid for ranges this index {@link #covers}.
+     */
+    public int[] calendar(long carId, LocalDate dateFrom, LocalDate dateTo) {
+        State s = state;
+        if (s == null) throw new IllegalStateException("availability index not loaded");
+        int from = (int) dateFrom.toEpochDay();
+        int to = (int) dateTo.toEpochDay();
+        Spans spans = s.byCar.get(carId);
+        return spans == null ? new int[]{to - from} : spans.runs(from, to);
+    }
+
+    public void onBooked(long rentalId, long carId, LocalDate dateFrom, LocalDate dateTo) {
+        BookedRange range = new BookedRange(rentalId, carId, dateFrom, dateTo);
+        synchronized (writeLock) {
+            if (duringLoad != null) duringLoad.add(new Write(rentalId, false, range));
+            State s = state;
+            if (s == null) return;
+            long delta = booked(s, range);
+            if (delta != 0) changed(delta);
+        }
+    }
+
+    public void onCanceled(long rentalId) {
+        synchronized (writeLock) {
+            if (duringLoad != null) duringLoad.add(new Write(rentalId, true, null));
+            State s = state;
+            if (s == null) return;
+            long delta = canceled(s, rentalId);
+            if (delta != 0) changed(delta);
+        }
+    }
+
+    /** Adds the booking to {@code s}; returns its version delta, {@code 0} if {@code s} is unchanged. */
+    private static long booked(State s, BookedRange r) {
+        int from = (int) r.dateFrom().toEpochDay();
+        int to = (int) r.dateTo().toEpochDay();
+        if (to <= s.horizon || s.carByRental.putIfAbsent(r.rentalId(), r.carId()) != null) return 0;
+        s.byCar.compute(r.carId(), (k, spans) -> spans == null
+                ? Spans.single(r.rentalId(), from, to)
+                : spans.with(r.rentalId(), from, to));
+        return mix(r.hashCode());
+    }
+
+    /** Removes the booking from {@code s}; returns its version delta, {@code 0} if {@code s} is unchanged. */
+    private static long canceled(State s, long rentalId) {
+        Long carId = s.carByRental.remove(rentalId);
+        if (carId == null) return 0;
+        BookedRange[] removed = new BookedRange[1];
+        s.byCar.computeIfPresent(carId, (k, spans) -> {
+            removed[0] = spans.range(carId, rentalId);
+            return spans.without(rentalId);
+        });
+        return removed[0] == null ? 0 : -mix(removed[0].hashCode());
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    public long lastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    private void changed(long delta) {
+        lastModifiedMillis = System.currentTimeMillis();
+        version.addAndGet(delta);
+    }
+
+    private static long mix(long h) {
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (resync != null) {
+            resync.shutdownNow();
+            resync = null;
+        }
+    }
+
+    private record Write(long rentalId, boolean canceled, BookedRange range) {
+    }
+
+    private static final class State {
+        final List<Car> cars;
+        final long horizon;
+        long carsVersion;
+        final Map<Long, Spans> byCar = new ConcurrentHashMap<>();
+        final Map<Long, Long> carByRental = new ConcurrentHashMap<>();
+
+        State(List<Car> cars, long horizon) {
+            this.cars = cars;
+            this.horizon = horizon;
+        }
+    }
+
+    /**
+     * Immutable half-open {@code [from, to)} epoch-day ranges of one car, sorted by start.
+     * {@code maxTo[i]} is the largest end among the first {@code i + 1} ranges, so a
+     * single binary search answers an overlap query even if ranges ever overlap.
+     */
+    static final class Spans {
+        private final long[] rentalIds;
+        private final int[] from;
+        private final int[] to;
+        private final int[] maxTo;
+
+        private Spans(long[] rentalIds, int[] from, int[] to) {
+            this.rentalIds = rentalIds;
+            this.from = from;
+            this.to = to;
+            this.maxTo = new int[to.length];
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < to.length; i++) {
+                max = Math.max(max, to[i]);
+                maxTo[i] = max;
+            }
+        }
+
+        static Spans single(long rentalId, int from, int to) {
+            return new Spans(new long[]{rentalId}, new int[]{from}, new int[]{to});
+        }
+
+        static Spans of(List<BookedRange> ranges) {
+            BookedRange[] sorted = ranges.toArray(new BookedRange[0]);
+            Arrays.sort(sorted, (a, b) -> a.dateFrom().compareTo(b.dateFrom()));
+            int n = sorted.length;
+            long[] ids = new long[n];
+            int[] f = new int[n];
+            int[] t = new int[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = sorted[i].rentalId();
+                f[i] = (int) sorted[i].dateFrom().toEpochDay();
+                t[i] = (int) sorted[i].dateTo().toEpochDay();
+            }
+            return new Spans(ids, f, t);
+        }
+
+        BookedRange range(long carId, long rentalId) {
+            for (int i = 0; i < rentalIds.length; i++) {
+                if (rentalIds[i] == rentalId) {
+                    return new BookedRange(rentalId, carId, LocalDate.ofEpochDay(from[i]), LocalDate.ofEpochDay(to[i]));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Run lengths in days over {@code [qFrom, qTo)}, alternating free and booked and
+         * starting with a free run (possibly {@code 0}); the lengths add up to the range.
+         * One pass over the ranges that start before {@code qTo}.
+         */
+        int[] runs(int qFrom, int qTo) {
+            int k = countStartingBefore(qTo);
+            int[] out = new int[2 * k + 1];
+            int n = 0;
+            int cursor = qFrom;
+            for (int i = 0; i < k; i++) {
+                int s = Math.max(from[i], qFrom);
+                int e = Math.min(to[i], qTo);
+                if (e <= cursor) continue;
+                if (s > cursor) {
+                    out[n++] = s - cursor;
+                    out[n++] = e - s;
+                } else if (n == 0) {
+                    out[n++] = 0;
+                    out[n++] = e - cursor;
+                } else {
+                    out[n - 1] += e - cursor;
+                }
+                cursor = e;
+            }
+            if (cursor < qTo || n == 0) out[n++] = qTo - cursor;
+            return Arrays.copyOf(out, n);
+        }
+
+        boolean isFree(int qFrom, int qTo) {
+            int k = countStartingBefore(qTo);
+            return k == 0 || maxTo[k - 1] <= qFrom;
+        }
+
+        Spans with(long rentalId, int f, int t) {
+            for (long id : rentalIds) {
+                if (id == rentalId) return this;
+            }
+            int n = from.length;
+            int pos = countStartingBefore(f + 1);
+            long[] ids = new long[n + 1];
+            int[] nf = new int[n + 1];
+            int[] nt = new int[n + 1];
+            System.arraycopy(rentalIds, 0, ids, 0, pos);
+            System.arraycopy(from, 0, nf, 0, pos);
+            System.arraycopy(to, 0, nt, 0, pos);
+            ids[pos] = rentalId;
+            nf[pos] = f;
+            nt[pos] = t;
+            System.arraycopy(rentalIds, pos, ids, pos + 1, n - pos);
+            System.arraycopy(from, pos, nf, pos + 1, n - pos);
+            System.arraycopy(to, pos, nt, pos + 1, n - pos);
+            return new Spans(ids, nf, nt);
+        }
+
+        Spans without(long rentalId) {
+            int n = rentalIds.length;
+            int idx = -1;
+            for (int i = 0; i < n; i++) {
+                if (rentalIds[i] == rentalId) {
+                    idx = i;
+                    break;
+                }
+            }
+            if (idx < 0) return this;
+            if (n == 1) return null;
+            long[] ids = new long[n - 1];
+            int[] nf = new int[n - 1];
+            int[] nt = new int[n - 1];
+            System.arraycopy(rentalIds, 0, ids, 0, idx);
+            System.arraycopy(from, 0, nf, 0, idx);
+            System.arraycopy(to, 0, nt, 0, idx);
+            System.arraycopy(rentalIds, idx + 1, ids, idx, n - idx - 1);
+            System.arraycopy(from, idx + 1, nf, idx, n - idx - 1);
+            System.arraycopy(to, idx + 1, nt, idx, n - idx - 1);
+            return new Spans(ids, nf, nt);
+        }
+
+        private int countStartingBefore(int day) {
+            int lo = 0;
+            int hi = from.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (from[mid] < day) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
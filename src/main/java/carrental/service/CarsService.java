@@ -1,27 +1,166 @@
 package carrental.service;
 
+import carrental.cache.BoundedCache;
+import carrental.cache.SingleFlightCache;
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
 import carrental.domain.model.Car;
+import carrental.domain.model.CarCalendar;
 import carrental.repository.CarRepository;
+import carrental.repository.ReservationRepository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Function;
 
 public final class CarsService {
+    public static final int MAX_CALENDAR_DAYS = 366;
+
     private final CarRepository cars;
+    private final ReservationRepository reservations;
+    private final AvailabilityIndex availability;
+    private final BoundedCache<Long, CachedCar> byId;
+    private final SingleFlightCache<SearchRange, List<Car>> searches;
 
-    public CarsService(CarRepository cars) {
+    public CarsService(CarRepository cars, ReservationRepository reservations, AvailabilityIndex availability,
+                       int cacheSize, long cacheTtlMillis, int searchCacheSize, long searchCacheMillis) {
         this.cars = cars;
+        this.reservations = reservations;
+        this.availability = availability;
+        this.byId = new BoundedCache<>(Math.max(1, cacheSize), cacheTtlMillis);
+        this.searches = new SingleFlightCache<>(Math.max(1, searchCacheSize), searchCacheMillis);
     }
 
     public List<Car> listAvailable(LocalDate dateFrom, LocalDate dateTo) {
         if (dateFrom == null || dateTo == null) {
             LocalDate today = LocalDate.now();
-            return cars.listAvailable(today, today.plusDays(1));
+            dateFrom = today;
+            dateTo = today.plusDays(1);
+        }
+        if (availability.covers(dateFrom)) {
+            return availability.listAvailable(dateFrom, dateTo);
+        }
+        // Identical searches share one query and, for a moment, its result. Bookings and
+        // cancellations change the index version, which retires both.
+        LocalDate from = dateFrom;
+        LocalDate to = dateTo;
+        return searches.get(new SearchRange(from, to), availability.version(),
+                () -> List.copyOf(cars.listAvailable(from, to)));
+    }
+
+    /**
+     * Version of the {@link #listAvailable} result for this range, or {@code null} if the range
+     * is answered by the database and has no cheap version. Read it before the listing.
+     */
+    public String listingVersion(LocalDate dateFrom, LocalDate dateTo) {
+        if (dateFrom == null || dateTo == null) {
+            LocalDate today = LocalDate.now();
+            dateFrom = today;
+            dateTo = today.plusDays(1);
+        }
+        if (!availability.covers(dateFrom)) return null;
+        return Long.toHexString(availability.version()) + "-" + dateFrom.toEpochDay() + "-" + dateTo.toEpochDay();
+    }
+
+    public long listingLastModifiedMillis() {
+        return availability.lastModifiedMillis();
+    }
+
+    /**
+     * Free and booked days of one car, built in one pass over its bookings: from the
+     * availability index when it covers the range, otherwise from a single query.
+     */
+    public CarCalendar calendar(long carId, LocalDate dateFrom, LocalDate dateTo) {
+        if (!dateTo.isAfter(dateFrom)) {
+            throw new DomainException(ErrorCode.VALIDATION, "to must be greater than from");
+        }
+        if (dateTo.toEpochDay() - dateFrom.toEpochDay() > MAX_CALENDAR_DAYS) {
+            throw new DomainException(ErrorCode.VALIDATION, "at most " + MAX_CALENDAR_DAYS + " days per calendar");
+        }
+        cached(carId);
+
+        int[] runs;
+        if (availability.covers(dateFrom)) {
+            runs = availability.calendar(carId, dateFrom, dateTo);
+        } else {
+            runs = AvailabilityIndex.Spans.of(reservations.listCarRanges(carId, dateFrom, dateTo))
+                    .runs((int) dateFrom.toEpochDay(), (int) dateTo.toEpochDay());
         }
-        return cars.listAvailable(dateFrom, dateTo);
+        return new CarCalendar(carId, dateFrom, dateTo, runs);
     }
 
     public Car get(long id) {
-        return cars.getById(id);
+        return cached(id).car;
+    }
+
+    /** Content hash of the car, equal on every instance that holds the same row. */
+    public String carVersion(long id) {
+        return cached(id).version;
+    }
+
+    /** The car encoded by {@code encoder}; the bytes are kept with the cache entry and reused until it is evicted. */
+    public byte[] getEncoded(long id, Function<Car, byte[]> encoder) {
+        CachedCar c = cached(id);
+        byte[] json = c.encoded;
+        if (json == null) {
+            json = encoder.apply(c.car);
+            c.encoded = json;
+        }
+        return json;
+    }
+
+    /**
+     * Drops cached cars and searches; called when a resync of the availability index sees car rows
+     * change, and after a checkpoint restore.
+     */
+    public void invalidateCars() {
+        byId.invalidateAll();
+        searches.invalidateAll();
+    }
+
+    public long cacheHits() {
+        return byId.hits();
+    }
+
+    public long cacheMisses() {
+        return byId.misses();
+    }
+
+    public long cacheEvictions() {
+        return byId.evictions();
+    }
+
+    public int cacheSize() {
+        return byId.size();
+    }
+
+    public long searchCacheHits() {
+        return searches.hits();
+    }
+
+    public long searchesCoalesced() {
+        return searches.coalesced();
+    }
+
+    public long searchQueries() {
+        return searches.loads();
+    }
+
+    private CachedCar cached(long id) {
+        return byId.getOrLoad(id, k -> new CachedCar(cars.getById(k)));
+    }
+
+    private record SearchRange(LocalDate dateFrom, LocalDate dateTo) {
+    }
+
+    private static final class CachedCar {
+        final Car car;
+        final String version;
+        volatile byte[] encoded;
+
+        CachedCar(Car car) {
+            this.car = car;
+            this.version = Integer.toHexString(car.hashCode());
+        }
     }
 }
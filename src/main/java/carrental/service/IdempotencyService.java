@@ -0,0 +1,193 @@
+package carrental.service;
+
+import carrental.cache.BoundedCache;
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
+import carrental.domain.model.IdempotentResponse;
+import carrental.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per client and {@code Idempotency-Key}, and answers retries with
+ * the response body of the first run. Finished responses are kept in a bounded in-memory cache
+ * in front of the repository; a duplicate that arrives while the first run is still going on
+ * in this process waits for it and gets the same outcome, success or error. A run on another
+ * instance shows up as a claimed key without a response and is answered with a conflict.
+ * <p>
+ * Only successful responses are stored: after an error the key is released and a retry runs
+ * again. Reusing a key for a different request is rejected.
+ */
+public final class IdempotencyService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    /** A claim without a response older than this is taken to belong to a run that died. */
+    private static final long STALE_CLAIM_SECONDS = 60;
+
+    private final IdempotencyKeyRepository repo;
+    private final BoundedCache<Key, IdempotentResponse> done;
+    private final ConcurrentHashMap<Key, Running> running = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private ScheduledExecutorService purge;
+
+    public IdempotencyService(IdempotencyKeyRepository repo, int cacheSize, long ttlMillis) {
+        this.repo = repo;
+        this.done = new BoundedCache<>(Math.max(1, cacheSize), ttlMillis);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the body produced by {@code action}, or the stored body if this key already
+     * completed. {@code request} identifies what was asked (the normalized request fields); a
+     * different value under the same key is a validation error.
+     */
+    public byte[] execute(long clientId, String key, String request, Supplier<byte[]> action) {
+        Key k = new Key(clientId, key);
+        byte[] hash = sha256(request);
+
+        IdempotentResponse cached = done.get(k);
+        if (cached != null) return replay(cached, hash);
+
+        Running mine = new Running(hash, new CompletableFuture<>());
+        Running first = running.putIfAbsent(k, mine);
+        if (first != null) {
+            coalesced.increment();
+            requireSameRequest(first.requestHash, hash);
+            try {
+                return first.body.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            byte[] body = runOnce(k, hash, action);
+            mine.body.complete(body);
+            return body;
+        } catch (RuntimeException e) {
+            mine.body.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(k, mine);
+        }
+    }
+
+    private byte[] runOnce(Key k, byte[] hash, Supplier<byte[]> action) {
+        Instant expiresAt = Instant.now().plusMillis(ttlMillis);
+        if (!repo.claim(k.clientId, k.key, hash, expiresAt, STALE_CLAIM_SECONDS)) {
+            IdempotentResponse stored = repo.find(k.clientId, k.key);
+            if (stored == null) {
+                // Expired or released between the two statements.
+                if (!repo.claim(k.clientId, k.key, hash, expiresAt, STALE_CLAIM_SECONDS)) {
+                    throw new DomainException(ErrorCode.CONFLICT, "a request with this Idempotency-Key is in progress");
+                }
+            } else {
+                if (stored.body() == null) {
+                    requireSameRequest(stored.requestHash(), hash);
+                    throw new DomainException(ErrorCode.CONFLICT, "a request with this Idempotency-Key is in progress");
+                }
+                done.put(k, stored);
+                return replay(stored, hash);
+            }
+        }
+
+        byte[] body;
+        try {
+            body = action.get();
+        } catch (RuntimeException e) {
+            try {
+                repo.release(k.clientId, k.key);
+            } catch (RuntimeException releaseFailure) {
+                e.addSuppressed(releaseFailure);
+            }
+            throw e;
+        }
+        try {
+            repo.complete(k.clientId, k.key, body);
+        } catch (RuntimeException e) {
+            // The work is done; a retry on another instance will find a stale claim and run again.
+            log.warn("cannot store response for idempotency key of client {}", k.clientId, e);
+        }
+        done.put(k, new IdempotentResponse(hash, body));
+        return body;
+    }
+
+    private byte[] replay(IdempotentResponse stored, byte[] hash) {
+        requireSameRequest(stored.requestHash(), hash);
+        replays.increment();
+        return stored.body();
+    }
+
+    private static void requireSameRequest(byte[] stored, byte[] hash) {
+        if (!MessageDigest.isEqual(stored, hash)) {
+            throw new DomainException(ErrorCode.VALIDATION, "Idempotency-Key was already used for a different request");
+        }
+    }
+
+    public synchronized void schedulePurge(long periodSeconds) {
+        if (periodSeconds <= 0 || purge != null) return;
+        purge = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-key-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        purge.scheduleWithFixedDelay(() -> {
+            try {
+                done.removeExpired();
+                int n = repo.deleteExpired();
+                if (n > 0) log.debug("deleted {} expired idempotency keys", n);
+            } catch (RuntimeException e) {
+                log.warn("idempotency key purge failed", e);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public long replays() {
+        return replays.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public int cacheSize() {
+        return done.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (purge != null) {
+            purge.shutdownNow();
+            purge = null;
+        }
+    }
+
+    private static byte[] sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Key(long clientId, String key) {
+    }
+
+    private record Running(byte[] requestHash, CompletableFuture<byte[]> body) {
+    }
+}
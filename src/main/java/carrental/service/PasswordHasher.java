@@ -0,0 +1,72 @@
+package carrental.service;
+
+import carrental.domain.error.DomainException;
+import carrental.domain.error.ErrorCode;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on a dedicated pool sized to the CPU count so that hashing never
+ * occupies HTTP worker threads. When the queue is full, work is rejected right
+ * away with {@link ErrorCode#UNAVAILABLE} instead of piling up.
+ */
+public final class PasswordHasher implements AutoCloseable {
+    private final ThreadPoolExecutor executor;
+    private final int logRounds;
+    private final LongAdder rejected = new LongAdder();
+
+    public PasswordHasher(int threads, int queueCapacity, int logRounds) {
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "bcrypt-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.logRounds = logRounds;
+    }
+
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds)));
+    }
+
+    public CompletableFuture<Boolean> check(String password, String hash) {
+        return submit(() -> BCrypt.checkpw(password, hash));
+    }
+
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    public int active() {
+        return executor.getActiveCount();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new DomainException(ErrorCode.UNAVAILABLE, "server busy"));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package carrental.service;
+
+import carrental.repository.RecoveryTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes expired password recovery tokens.
+ */
+public final class RecoveryTokenCleanup implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RecoveryTokenCleanup.class);
+
+    private final RecoveryTokenRepository tokens;
+    private ScheduledExecutorService timer;
+
+    public RecoveryTokenCleanup(RecoveryTokenRepository tokens) {
+        this.tokens = tokens;
+    }
+
+    public synchronized void schedule(long periodSeconds) {
+        if (periodSeconds <= 0 || timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recovery-token-cleanup");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                int n = tokens.deleteExpired();
+                if (n > 0) log.debug("deleted {} expired recovery tokens", n);
+            } catch (RuntimeException e) {
+                log.warn("recovery token cleanup failed", e);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+}
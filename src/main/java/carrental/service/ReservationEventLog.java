@@ -0,0 +1,315 @@
+package carrental.service;
+
+import carrental.domain.model.ReservationEvent;
+import carrental.repository.ReservationEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records reservation status changes without touching the booking path's latency.
+ * {@link #emit} only enqueues into a bounded queue; one background thread drains whatever has
+ * accumulated (up to {@code batchSize}) and appends it with a single statement.
+ *
+ * <p>Nothing is dropped while the process shuts down cleanly. When the queue is full, or after
+ * {@link #close}, the producer appends the event to the spill file itself, which is the
+ * backpressure: callers slow down only when the writer has fallen behind. A batch the database
+ * rejects goes to the same file, and the writer replays the file on its backoff schedule, busy
+ * or not (and on the next start). Event ids are assigned at emit time and inserts skip known
+ * ids, so a replayed batch is never counted twice. Events still in the queue are in memory
+ * only: a crash or {@code kill -9} loses them.
+ */
+public final class ReservationEventLog implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReservationEventLog.class);
+
+    private static final long IDLE_POLL_MS = 500;
+    private static final long MAX_BACKOFF_MS = 5_000;
+    private static final long CLOSE_WAIT_MS = 10_000;
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    private final ReservationEventRepository repo;
+    private final BlockingQueue<ReservationEvent> queue;
+    private final int batchSize;
+    private final Path spill;
+    private final Path replay;
+    private final Object spillLock = new Object();
+
+    private final long idPrefix = new SecureRandom().nextLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    private volatile boolean closed;
+    private Thread writer;
+
+    public ReservationEventLog(ReservationEventRepository repo, int queueSize, int batchSize, Path spill) {
+        this.repo = repo;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.spill = spill;
+        this.replay = spill.resolveSibling(spill.getFileName() + REPLAY_SUFFIX);
+    }
+
+    public synchronized void start() {
+        if (writer != null || closed) return;
+        writer = new Thread(this::run, "reservation-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void emit(long rentalId, long clientId, Long carId, String status) {
+        ReservationEvent e = new ReservationEvent(new UUID(idPrefix, sequence.incrementAndGet()),
+                rentalId, clientId, carId, status, Instant.now());
+        if (closed || !queue.offer(e)) {
+            spill(List.of(e));
+        } else if (closed) {
+            // close() may have drained the queue between the check above and the offer.
+            spillQueued();
+        }
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    public long written() {
+        return written.get();
+    }
+
+    public long spilled() {
+        return spilled.get();
+    }
+
+    public long writeFailures() {
+        return writeFailures.get();
+    }
+
+    public long lost() {
+        return lost.get();
+    }
+
+    /**
+     * Stops accepting events into the queue and waits for the writer to flush what is queued.
+     * Anything still queued after the wait is spilled.
+     */
+    @Override
+    public void close() {
+        Thread w;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            w = writer;
+        }
+        if (w != null) {
+            try {
+                w.join(CLOSE_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        spillQueued();
+    }
+
+    private void spillQueued() {
+        List<ReservationEvent> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) spill(rest);
+    }
+
+    private void run() {
+        List<ReservationEvent> batch = new ArrayList<>(batchSize);
+        long backoff = 0;
+        long nextReplay = 0;
+        while (true) {
+            ReservationEvent first;
+            try {
+                first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null && closed) break;
+
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                if (!write(batch)) {
+                    spill(batch);
+                    batch.clear();
+                    backoff = nextBackoff(backoff);
+                    nextReplay = System.currentTimeMillis() + backoff;
+                    if (!closed) sleep(backoff);
+                    continue;
+                }
+                batch.clear();
+            }
+
+            // Idle or just written: the spill file gets its turn on the backoff schedule,
+            // so steady traffic cannot keep it from being replayed.
+            if (System.currentTimeMillis() >= nextReplay) {
+                if (replaySpill()) {
+                    backoff = 0;
+                } else {
+                    backoff = nextBackoff(backoff);
+                }
+                nextReplay = System.currentTimeMillis() + Math.max(IDLE_POLL_MS, backoff);
+            }
+        }
+    }
+
+    private static long nextBackoff(long backoff) {
+        return Math.min(MAX_BACKOFF_MS, Math.max(IDLE_POLL_MS, backoff * 2));
+    }
+
+    private boolean write(List<ReservationEvent> batch) {
+        try {
+            repo.append(batch);
+            written.addAndGet(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            writeFailures.incrementAndGet();
+            log.warn("failed to write {} reservation events, spilling to {}", batch.size(), spill, e);
+            return false;
+        }
+    }
+
+    /**
+     * Moves the spill file aside and writes it back in batches. If a batch fails, the lines
+     * not yet written go back to the spill file for the next attempt. Returns {@code false}
+     * if the database is still refusing writes.
+     */
+    private boolean replaySpill() {
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replay)) {
+                    if (!Files.exists(spill)) return true;
+                    Files.move(spill, replay, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.warn("cannot move spill file {} aside", spill, e);
+                return false;
+            }
+        }
+
+        int replayed = 0;
+        try (BufferedReader in = Files.newBufferedReader(replay, StandardCharsets.UTF_8)) {
+            List<ReservationEvent> batch = new ArrayList<>(batchSize);
+            String line;
+            while (true) {
+                line = in.readLine();
+                if (line != null && !line.isBlank()) {
+                    try {
+                        batch.add(parse(line));
+                    } catch (RuntimeException e) {
+                        lost.incrementAndGet();
+                        log.error("skipping malformed spill line: {}", line, e);
+                    }
+                }
+                if (batch.size() == batchSize || (line == null && !batch.isEmpty())) {
+                    if (!write(batch)) {
+                        requeueRest(batch, in);
+                        return false;
+                    }
+                    replayed += batch.size();
+                    batch.clear();
+                }
+                if (line == null) break;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("cannot replay spill file {}, leaving it in place", replay, e);
+            return false;
+        }
+        try {
+            Files.delete(replay);
+        } catch (IOException e) {
+            log.warn("cannot delete replayed spill file {}", replay, e);
+        }
+        if (replayed > 0) log.info("replayed {} spilled reservation events", replayed);
+        return true;
+    }
+
+    private void requeueRest(List<ReservationEvent> failed, BufferedReader in) throws IOException {
+        synchronized (spillLock) {
+            StringBuilder sb = new StringBuilder();
+            for (ReservationEvent e : failed) format(sb, e);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank()) sb.append(line).append('\n');
+            }
+            append(sb);
+            Files.delete(replay);
+        }
+    }
+
+    private void spill(List<ReservationEvent> events) {
+        StringBuilder sb = new StringBuilder(events.size() * 96);
+        for (ReservationEvent e : events) format(sb, e);
+        synchronized (spillLock) {
+            try {
+                append(sb);
+                spilled.addAndGet(events.size());
+            } catch (IOException ex) {
+                lost.addAndGet(events.size());
+                log.error("cannot spill {} reservation events to {}: {}", events.size(), spill, events, ex);
+            }
+        }
+    }
+
+    private void append(CharSequence lines) throws IOException {
+        try (FileChannel ch = FileChannel.open(spill,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buf = StandardCharsets.UTF_8.encode(lines.toString());
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+    }
+
+    private static void format(StringBuilder sb, ReservationEvent e) {
+        sb.append(e.eventId()).append('\t')
+                .append(e.rentalId()).append('\t')
+                .append(e.clientId()).append('\t')
+                .append(e.carId() == null ? "" : e.carId().toString()).append('\t')
+                .append(e.status()).append('\t')
+                .append(e.occurredAt()).append('\n');
+    }
+
+    private static ReservationEvent parse(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length != 6) throw new IllegalArgumentException("malformed spill line: " + line);
+        return new ReservationEvent(
+                UUID.fromString(f[0]),
+                Long.parseLong(f[1]),
+                Long.parseLong(f[2]),
+                f[3].isEmpty() ? null : Long.valueOf(f[3]),
+                f[4],
+                Instant.parse(f[5]));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,17 +2,34 @@ package carrental.service;
 
 import carrental.domain.error.DomainException;
 import carrental.domain.error.ErrorCode;
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookingRequest;
+import carrental.domain.model.ReservationCursor;
+import carrental.domain.model.ReservationPage;
 import carrental.domain.model.ReservationView;
+import carrental.domain.model.StatusChange;
 import carrental.repository.ReservationRepository;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 public final class ReservationsService {
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private static final String STATUS_CONFIRMED = "confirmed";
+    private static final String STATUS_CANCELED = "canceled";
+
     private final ReservationRepository res;
+    private final AvailabilityIndex availability;
+    private final ReservationEventLog events;
 
-    public ReservationsService(ReservationRepository res) {
+    public ReservationsService(ReservationRepository res, AvailabilityIndex availability, ReservationEventLog events) {
         this.res = res;
+        this.availability = availability;
+        this.events = events;
     }
 
     public ReservationView createAndConfirm(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
@@ -23,27 +40,87 @@ public final class ReservationsService {
             throw new DomainException(ErrorCode.VALIDATION, "date_to must be greater than date_from");
         }
 
-        boolean allowed = res.isClientAllowed(clientId);
-        if (!allowed) throw new DomainException(ErrorCode.CLIENT_BLOCKED, "client blocked");
+        ReservationView view = res.createConfirmed(clientId, carId, dateFrom, dateTo);
+        availability.onBooked(view.rentalId(), view.carId(), view.dateFrom(), view.dateTo());
+        events.emit(view.rentalId(), clientId, view.carId(), STATUS_CONFIRMED);
+        return view;
+    }
 
-        long id = res.create(clientId, carId, dateFrom, dateTo);
+    /**
+     * Books several cars in one database round trip. The one-active-booking rule is checked
+     * once for the whole batch. With {@code atomic} either every item is booked or none is;
+     * otherwise each item succeeds or fails on its own.
+     */
+    public List<BatchItemResult> createBatch(long clientId, List<BookingRequest> items, boolean atomic) {
+        if (items == null || items.isEmpty()) {
+            throw new DomainException(ErrorCode.VALIDATION, "items must not be empty");
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new DomainException(ErrorCode.VALIDATION, "at most " + MAX_BATCH_SIZE + " items per batch");
+        }
 
-        boolean ok = res.updateStatus(id, clientId, "confirmed");
-        if (!ok) throw new DomainException(ErrorCode.INTERNAL, "internal error");
+        BatchItemResult[] out = new BatchItemResult[items.size()];
+        List<BookingRequest> valid = new ArrayList<>(items.size());
+        List<Integer> validIndex = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            String error = validate(items.get(i));
+            if (error == null) {
+                valid.add(items.get(i));
+                validIndex.add(i);
+            } else if (atomic) {
+                throw new DomainException(ErrorCode.VALIDATION, "item " + i + ": " + error);
+            } else {
+                out[i] = new BatchItemResult(i, null, ErrorCode.VALIDATION, error);
+            }
+        }
 
-        return res.getByIdForClient(id, clientId);
+        if (!valid.isEmpty()) {
+            for (BatchItemResult r : res.createConfirmedBatch(clientId, valid, atomic)) {
+                int i = validIndex.get(r.index());
+                out[i] = new BatchItemResult(i, r.reservation(), r.error(), r.message());
+                ReservationView v = r.reservation();
+                if (v != null) {
+                    availability.onBooked(v.rentalId(), v.carId(), v.dateFrom(), v.dateTo());
+                    events.emit(v.rentalId(), clientId, v.carId(), STATUS_CONFIRMED);
+                }
+            }
+        }
+        return Arrays.asList(out);
+    }
+
+    private static String validate(BookingRequest r) {
+        if (r == null || r.carId() <= 0 || r.dateFrom() == null || r.dateTo() == null) return "validation error";
+        if (!r.dateTo().isAfter(r.dateFrom())) return "date_to must be greater than date_from";
+        return null;
     }
 
     public List<ReservationView> listMine(long clientId) {
         return res.listByClient(clientId);
     }
 
+    public ReservationPage listMinePage(long clientId, ReservationCursor after, int limit) {
+        if (limit <= 0) throw new DomainException(ErrorCode.VALIDATION, "limit must be positive");
+        List<ReservationView> rows = res.listByClientAfter(clientId, after, limit + 1);
+        if (rows.size() <= limit) return new ReservationPage(rows, null);
+        List<ReservationView> items = rows.subList(0, limit);
+        ReservationView last = items.get(limit - 1);
+        return new ReservationPage(items, new ReservationCursor(last.dateFrom(), last.rentalId()));
+    }
+
+    public void streamMine(long clientId, Consumer<ReservationView> sink) {
+        res.streamByClient(clientId, sink);
+    }
+
     public ReservationView getMine(long rentalId, long clientId) {
         return res.getByIdForClient(rentalId, clientId);
     }
 
+    /** Canceling an already canceled reservation succeeds without recording another event. */
     public void cancel(long rentalId, long clientId) {
-        boolean ok = res.updateStatus(rentalId, clientId, "canceled");
-        if (!ok) throw new DomainException(ErrorCode.NOT_FOUND, "reservation not found");
+        StatusChange change = res.updateStatus(rentalId, clientId, STATUS_CANCELED);
+        if (change == StatusChange.NOT_FOUND) throw new DomainException(ErrorCode.NOT_FOUND, "reservation not found");
+        if (change == StatusChange.UNCHANGED) return;
+        availability.onCanceled(rentalId);
+        events.emit(rentalId, clientId, null, STATUS_CANCELED);
     }
 }
@@ -0,0 +1,9 @@
+CREATE TABLE pending_shard_undos (
+  undo_id BIGINT GENERATED ALWAYS AS IDENTITY NOT NULL,
+  shard INTEGER NOT NULL,
+  client_id BIGINT NOT NULL,
+  rental_ids BIGINT[] NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+ALTER TABLE pending_shard_undos ADD CONSTRAINT pending_shard_undos_pk PRIMARY KEY (undo_id);
@@ -0,0 +1,15 @@
+-- Availability searches already use the GiST index behind reservations_no_overlap:
+-- (car_id, daterange(date_from, date_to, '[)')) WHERE status <> 'canceled'.
+
+CREATE INDEX reservations_client_active_idx
+  ON reservations (client_id, date_to)
+  WHERE status IN ('pending','confirmed');
+
+CREATE INDEX reservations_client_listing_idx
+  ON reservations (client_id, date_from DESC, rental_id DESC);
+
+DROP INDEX reservations__idxv1;
+
+CREATE INDEX reservations_open_date_to_idx
+  ON reservations (date_to)
+  WHERE status <> 'canceled';
@@ -0,0 +1,54 @@
+CREATE OR REPLACE FUNCTION create_confirmed_reservations(
+  p_client_id  BIGINT,
+  p_car_ids    BIGINT[],
+  p_dates_from DATE[],
+  p_dates_to   DATE[]
+)
+RETURNS TABLE (item_no INTEGER, new_rental_id BIGINT, car_found BOOLEAN)
+LANGUAGE plpgsql
+AS $$
+#variable_conflict use_column
+BEGIN
+  IF EXISTS (
+    SELECT 1
+    FROM reservations
+    WHERE client_id = p_client_id
+      AND status IN ('pending','confirmed')
+      AND date_to >= CURRENT_DATE
+  ) THEN
+    RAISE EXCEPTION 'client blocked';
+  END IF;
+
+  -- Items that overlap an existing booking or an earlier item of the same call are
+  -- skipped by ON CONFLICT DO NOTHING (reservations_no_overlap) and come back without a rental id.
+  RETURN QUERY
+  WITH items AS (
+    SELECT i.car_id, i.date_from, i.date_to, i.ord::INTEGER AS ord,
+           row_number() OVER (PARTITION BY i.car_id, i.date_from, i.date_to ORDER BY i.ord) AS dup
+    FROM unnest(p_car_ids, p_dates_from, p_dates_to) WITH ORDINALITY AS i(car_id, date_from, date_to, ord)
+  ),
+  ins AS (
+    INSERT INTO reservations (
+      client_id, car_id, date_from, date_to, status,
+      daily_rate_at_booking, total_amount, penalty_amount, deposit_amount
+    )
+    SELECT p_client_id, it.car_id, it.date_from, it.date_to, 'confirmed',
+           c.daily_cost, GREATEST(it.date_to - it.date_from, 1) * c.daily_cost, 0, 0
+    FROM items it
+    JOIN cars c ON c.car_id = it.car_id
+    ORDER BY it.ord
+    ON CONFLICT DO NOTHING
+    RETURNING reservations.rental_id, reservations.car_id, reservations.date_from, reservations.date_to
+  )
+  SELECT it.ord,
+         ins.rental_id,
+         EXISTS (SELECT 1 FROM cars c WHERE c.car_id = it.car_id)
+  FROM items it
+  LEFT JOIN ins
+    ON it.dup = 1
+   AND ins.car_id = it.car_id
+   AND ins.date_from = it.date_from
+   AND ins.date_to = it.date_to
+  ORDER BY it.ord;
+END;
+$$;
@@ -0,0 +1,9 @@
+CREATE TABLE password_recovery_tokens (
+  email VARCHAR(255) NOT NULL,
+  token_hash BYTEA NOT NULL,
+  expires_at TIMESTAMPTZ NOT NULL
+);
+
+ALTER TABLE password_recovery_tokens ADD CONSTRAINT password_recovery_tokens_pk PRIMARY KEY (email);
+
+CREATE INDEX password_recovery_tokens__idx ON password_recovery_tokens (expires_at);
@@ -0,0 +1,14 @@
+CREATE TABLE reservation_events (
+  event_id UUID NOT NULL,
+  rental_id BIGINT NOT NULL,
+  client_id BIGINT NOT NULL,
+  car_id BIGINT,
+  status VARCHAR(20) NOT NULL,
+  occurred_at TIMESTAMPTZ NOT NULL,
+  recorded_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+ALTER TABLE reservation_events ADD CONSTRAINT reservation_events_pk PRIMARY KEY (event_id);
+
+CREATE INDEX reservation_events__idx ON reservation_events (rental_id, occurred_at);
+CREATE INDEX reservation_events_occurred_idx ON reservation_events USING BRIN (occurred_at);
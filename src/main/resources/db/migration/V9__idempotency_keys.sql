@@ -0,0 +1,12 @@
+CREATE TABLE idempotency_keys (
+  client_id BIGINT NOT NULL,
+  idem_key VARCHAR(255) NOT NULL,
+  request_hash BYTEA NOT NULL,
+  response BYTEA,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  expires_at TIMESTAMPTZ NOT NULL
+);
+
+ALTER TABLE idempotency_keys ADD CONSTRAINT idempotency_keys_pk PRIMARY KEY (client_id, idem_key);
+
+CREATE INDEX idempotency_keys__idx ON idempotency_keys (expires_at);
@@ -0,0 +1,256 @@
+package carrental.service;
+
+import carrental.domain.model.BatchItemResult;
+import carrental.domain.model.BookedRange;
+import carrental.domain.model.BookingRequest;
+import carrental.domain.model.Car;
+import carrental.domain.model.ReservationCursor;
+import carrental.domain.model.ReservationView;
+import carrental.domain.model.StatusChange;
+import carrental.repository.CarRepository;
+import carrental.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AvailabilityIndexTest {
+    private static final LocalDate FROM = LocalDate.now().plusDays(10);
+    private static final LocalDate TO = FROM.plusDays(3);
+    private static final List<Car> CARS = List.of(car(1), car(2));
+
+    @Test
+    void bookingMadeDuringLoadSurvivesTheSwap() throws Exception {
+        Ranges db = new Ranges(List.of());
+        AvailabilityIndex index = new AvailabilityIndex(new Cars(), db);
+        index.load();
+
+        // The resync reads the database before the booking commits...
+        Thread resync = db.blockNextRead(index);
+        // ...and the booking reaches the index while the resync is still building its snapshot.
+        index.onBooked(10, 1, FROM, TO);
+        db.release(resync);
+
+        assertFalse(index.isFree(1, FROM, TO));
+        assertEquals(List.of(2L), carIds(index.listAvailable(FROM, TO)));
+    }
+
+    @Test
+    void cancellationMadeDuringLoadSurvivesTheSwap() throws Exception {
+        Ranges db = new Ranges(List.of(new BookedRange(10, 1, FROM, TO)));
+        AvailabilityIndex index = new AvailabilityIndex(new Cars(), db);
+        index.load();
+        assertFalse(index.isFree(1, FROM, TO));
+
+        Thread resync = db.blockNextRead(index);
+        index.onCanceled(10);
+        db.release(resync);
+
+        assertTrue(index.isFree(1, FROM, TO));
+    }
+
+    /** The listing ETag is this version: it must not fall back to a value from before the write. */
+    @Test
+    void versionAfterRacingLoadMatchesTheData() throws Exception {
+        Ranges db = new Ranges(List.of());
+        AvailabilityIndex index = new AvailabilityIndex(new Cars(), db);
+        index.load();
+        long beforeBooking = index.version();
+
+        Thread resync = db.blockNextRead(index);
+        index.onBooked(10, 1, FROM, TO);
+        db.release(resync);
+
+        AvailabilityIndex fresh = new AvailabilityIndex(new Cars(), new Ranges(List.of(new BookedRange(10, 1, FROM, TO))));
+        fresh.load();
+        assertNotEquals(beforeBooking, index.version());
+        assertEquals(fresh.version(), index.version());
+    }
+
+    @Test
+    void carsListenerRunsOnlyWhenCarRowsChange() {
+        Cars cars = new Cars();
+        AvailabilityIndex index = new AvailabilityIndex(cars, new Ranges(List.of()));
+        AtomicInteger calls = new AtomicInteger();
+        index.addCarsListener(calls::incrementAndGet);
+        index.load();
+        index.load();
+        assertEquals(0, calls.get());
+
+        Car edited = new Car(2, "P2", "Toyota", "Camry", "available", BigDecimal.ONE, BigDecimal.ONE, 2020);
+        cars.all = List.of(car(1), edited);
+        index.load();
+        assertEquals(1, calls.get());
+        index.load();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void runsMergeAdjacentBookings() {
+        AvailabilityIndex.Spans spans = spans(range(1, 2, 5), range(2, 5, 7));
+        assertArrayEquals(new int[]{2, 5, 3}, spans.runs(0, 10));
+    }
+
+    @Test
+    void runsMergeOverlappingBookings() {
+        AvailabilityIndex.Spans spans = spans(range(1, 2, 6), range(2, 4, 8), range(3, 5, 7));
+        assertArrayEquals(new int[]{2, 6, 2}, spans.runs(0, 10));
+    }
+
+    @Test
+    void runsClipBookingThatStartsBeforeTheRange() {
+        AvailabilityIndex.Spans spans = spans(range(1, -3, 3), range(2, 6, 8));
+        assertArrayEquals(new int[]{0, 3, 3, 2, 2}, spans.runs(0, 10));
+        assertArrayEquals(new int[]{0, 10}, spans(range(1, -3, 20)).runs(0, 10));
+    }
+
+    @Test
+    void runsOfCarWithoutBookingsAreOneFreeRun() {
+        assertArrayEquals(new int[]{10}, spans().runs(0, 10));
+        assertArrayEquals(new int[]{10}, spans(range(1, 12, 15)).runs(0, 10));
+
+        AvailabilityIndex index = new AvailabilityIndex(new Cars(), new Ranges(List.of(new BookedRange(10, 1, FROM, TO))));
+        index.load();
+        assertArrayEquals(new int[]{30}, index.calendar(2, FROM, FROM.plusDays(30)));
+    }
+
+    private static AvailabilityIndex.Spans spans(BookedRange... ranges) {
+        return AvailabilityIndex.Spans.of(List.of(ranges));
+    }
+
+    private static BookedRange range(long rentalId, int fromDay, int toDay) {
+        return new BookedRange(rentalId, 1, LocalDate.ofEpochDay(fromDay), LocalDate.ofEpochDay(toDay));
+    }
+
+    private static List<Long> carIds(List<Car> cars) {
+        return cars.stream().map(Car::carId).toList();
+    }
+
+    private static Car car(long id) {
+        return new Car(id, "P" + id, "Toyota", "Camry", "available", BigDecimal.TEN, BigDecimal.ONE, 2020);
+    }
+
+    private static final class Cars implements CarRepository {
+        volatile List<Car> all = CARS;
+
+        @Override
+        public List<Car> listAvailable(LocalDate dateFrom, LocalDate dateTo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Car getById(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Car> listAll() {
+            return all;
+        }
+    }
+
+    /** Serves a fixed set of active ranges; the next read can be held until released. */
+    private static final class Ranges implements ReservationRepository {
+        private final List<BookedRange> ranges;
+        private volatile CountDownLatch reading;
+        private volatile CountDownLatch proceed;
+
+        Ranges(List<BookedRange> ranges) {
+            this.ranges = ranges;
+        }
+
+        /** Starts {@code index.load()} on another thread and returns once it has read the ranges. */
+        Thread blockNextRead(AvailabilityIndex index) throws InterruptedException {
+            CountDownLatch read = new CountDownLatch(1);
+            proceed = new CountDownLatch(1);
+            reading = read;
+            Thread t = new Thread(index::load, "test-resync");
+            t.start();
+            assertTrue(read.await(5, TimeUnit.SECONDS));
+            return t;
+        }
+
+        void release(Thread resync) throws InterruptedException {
+            proceed.countDown();
+            resync.join(5_000);
+            assertFalse(resync.isAlive());
+        }
+
+        @Override
+        public List<BookedRange> listActiveRanges(LocalDate endingAfter) {
+            List<BookedRange> snapshot = List.copyOf(ranges);
+            CountDownLatch r = reading;
+            if (r != null) {
+                reading = null;
+                r.countDown();
+                try {
+                    proceed.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return snapshot;
+        }
+
+        @Override
+        public boolean isClientAllowed(long clientId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long create(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ReservationView createConfirmed(long clientId, long carId, LocalDate dateFrom, LocalDate dateTo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<BatchItemResult> createConfirmedBatch(long clientId, List<BookingRequest> items, boolean atomic) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StatusChange updateStatus(long rentalId, long clientId, String status) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ReservationView> listByClient(long clientId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ReservationView> listByClientAfter(long clientId, ReservationCursor after, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamByClient(long clientId, Consumer<ReservationView> sink) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ReservationView getByIdForClient(long rentalId, long clientId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<BookedRange> listCarRanges(long carId, LocalDate dateFrom, LocalDate dateTo) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}